@@ -1,6 +1,8 @@
 package com.orctom.laputa.service.example.controller;
 
 import com.orctom.laputa.service.annotation.Path;
+import com.orctom.laputa.service.annotation.Priority;
+import com.orctom.laputa.service.model.PriorityLevel;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -20,4 +22,10 @@ public class Global {
   public String login() {
     return "hello login";
   }
+
+  @Priority(PriorityLevel.CRITICAL)
+  @Path("/health")
+  public String health() {
+    return "ok";
+  }
 }
@@ -7,6 +7,7 @@ import com.orctom.laputa.service.annotation.POST;
 import com.orctom.laputa.service.annotation.Param;
 import com.orctom.laputa.service.annotation.Path;
 import com.orctom.laputa.service.annotation.RedirectTo;
+import com.orctom.laputa.service.annotation.Throttle;
 import com.orctom.laputa.service.example.model.Products;
 import com.orctom.laputa.service.example.model.SKU;
 import com.orctom.laputa.service.model.Messenger;
@@ -16,6 +17,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Controller;
 
 import javax.validation.constraints.Size;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Controller
 @Path("/product")
@@ -59,6 +63,17 @@ public class Product {
     return new SKU(id, id + "-desc", 123456, 100000);
   }
 
+  @Path("/sku/{id}/async")
+  public CompletableFuture<SKU> skuAsync(@Param("id") String id) {
+    return CompletableFuture.supplyAsync(() -> sku(id));
+  }
+
+  // curl http://localhost:7000/product/skus/export
+  @Path("/skus/export")
+  public Stream<SKU> exportSkus() {
+    return IntStream.range(0, 1_000_000).mapToObj(i -> sku(String.valueOf(i)));
+  }
+
   // http://localhost:7000/product/sku/new?sku=sku&desc=desc&category=cate&stock=100
   // curl -X POST -d "sku=sku&desc=desc&category=cate&stock=100" ttp://localhost:7000/product/sku/new
   @Path("/sku/new")
@@ -68,6 +83,7 @@ public class Product {
     return sku;
   }
 
+  @Throttle(permitsPerSecond = 100, cost = 10, group = "products")
   @Path("/products")
   @POST
   public String addProducts(@Param("products") Products products) {
@@ -76,6 +92,7 @@ public class Product {
   }
 
   // curl -H "Content-Type: application/json" -X POST -d '{"uid":"1001","skus":[{"sku":"123","desc":"a sku","category":"1","stock":"1000"},{"sku":"122","desc":"b sku","category":"2","stock":"100"}]}' http://localhost:7000/product/products/2
+  @Throttle(permitsPerSecond = 100, cost = 10, group = "products")
   @Path("/products/2")
   @POST
   public String addProducts2(@Data Products products) {
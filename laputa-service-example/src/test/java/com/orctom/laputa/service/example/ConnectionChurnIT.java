@@ -0,0 +1,87 @@
+package com.orctom.laputa.service.example;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connections per second against a running {@link SampleServer}, every request on a new connection
+ * (`Connection: close`), so it is the accepting that gets measured.
+ * Run it twice, with `server.epoll = true` and `server.reusePort` off then on:
+ * <pre>
+ * mvn verify -Dbench.port=7000 -Dbench.threads=64 -Dbench.duration=30 -Dit.test=ConnectionChurnIT
+ * </pre>
+ */
+public class ConnectionChurnIT {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionChurnIT.class);
+
+  private static final String HOST = System.getProperty("bench.host", "127.0.0.1");
+  private static final int PORT = Integer.getInteger("bench.port", 7000);
+  private static final int THREADS = Integer.getInteger("bench.threads", 32);
+  private static final int DURATION = Integer.getInteger("bench.duration", 10);
+
+  private static final byte[] REQUEST = ("GET /health HTTP/1.1\r\n" +
+      "Host: " + HOST + "\r\n" +
+      "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+  @Before
+  public void assumeServerRunning() {
+    try (Socket socket = new Socket()) {
+      socket.connect(new InetSocketAddress(HOST, PORT), 1000);
+    } catch (IOException e) {
+      Assume.assumeNoException("No server on " + HOST + ":" + PORT, e);
+    }
+  }
+
+  @Test
+  public void testConnectionsPerSecond() throws Exception {
+    LongAdder connections = new LongAdder();
+    LongAdder errors = new LongAdder();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DURATION);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch done = new CountDownLatch(THREADS);
+    for (int i = 0; i < THREADS; i++) {
+      executor.execute(() -> {
+        byte[] buffer = new byte[1024];
+        while (System.nanoTime() < deadline) {
+          try (Socket socket = new Socket(HOST, PORT)) {
+            socket.setSoLinger(true, 0);
+            OutputStream out = socket.getOutputStream();
+            out.write(REQUEST);
+            out.flush();
+            InputStream in = socket.getInputStream();
+            while (-1 != in.read(buffer)) {
+              // till the server closes the connection
+            }
+            connections.increment();
+          } catch (IOException e) {
+            errors.increment();
+          }
+        }
+        done.countDown();
+      });
+    }
+
+    done.await();
+    executor.shutdown();
+
+    LOGGER.info("{} threads, {}s: {} connections/s, {} errors",
+        THREADS, DURATION, connections.sum() / DURATION, errors.sum());
+  }
+}
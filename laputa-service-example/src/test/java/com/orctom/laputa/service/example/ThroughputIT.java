@@ -0,0 +1,152 @@
+package com.orctom.laputa.service.example;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second and latency percentiles against a running {@link SampleServer} over keep-alive connections,
+ * one request in flight per connection. To compare the transports, start the server with each of them in turn:
+ * <pre>
+ * java -Dserver.transport=nio|epoll -jar laputa-service-example.jar
+ * mvn verify -Dbench.port=7000 -Dbench.connections=64 -Dbench.duration=30 -Dit.test=ThroughputIT
+ * </pre>
+ * The transport actually used (after falling back) is logged by the server at startup.
+ */
+public class ThroughputIT {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ThroughputIT.class);
+
+  private static final String HOST = System.getProperty("bench.host", "127.0.0.1");
+  private static final int PORT = Integer.getInteger("bench.port", 7000);
+  private static final String PATH = System.getProperty("bench.path", "/health");
+  private static final int CONNECTIONS = Integer.getInteger("bench.connections", 32);
+  private static final int DURATION = Integer.getInteger("bench.duration", 10);
+  private static final int WARMUP = Integer.getInteger("bench.warmup", 5);
+
+  private static final byte[] REQUEST = ("GET " + PATH + " HTTP/1.1\r\n" +
+      "Host: " + HOST + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+  @Before
+  public void assumeServerRunning() {
+    try (Socket socket = new Socket()) {
+      socket.connect(new InetSocketAddress(HOST, PORT), 1000);
+    } catch (IOException e) {
+      Assume.assumeNoException("No server on " + HOST + ":" + PORT, e);
+    }
+  }
+
+  @Test
+  public void testThroughputAndLatency() throws Exception {
+    run(WARMUP);
+    long[] latencies = run(DURATION);
+
+    Arrays.sort(latencies);
+    LOGGER.info("{} connections, {}s: {} requests/s, p50: {}us, p99: {}us, p99.9: {}us, max: {}us",
+        CONNECTIONS, DURATION, latencies.length / DURATION,
+        micros(latencies, 0.5), micros(latencies, 0.99), micros(latencies, 0.999),
+        micros(latencies, 1));
+  }
+
+  private long[] run(int seconds) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    long[][] samples = new long[CONNECTIONS][];
+    int[] counts = new int[CONNECTIONS];
+
+    ExecutorService executor = Executors.newFixedThreadPool(CONNECTIONS);
+    CountDownLatch done = new CountDownLatch(CONNECTIONS);
+    for (int i = 0; i < CONNECTIONS; i++) {
+      int index = i;
+      executor.execute(() -> {
+        long[] latencies = new long[1024];
+        int count = 0;
+        try (Socket socket = new Socket(HOST, PORT)) {
+          socket.setTcpNoDelay(true);
+          OutputStream out = socket.getOutputStream();
+          InputStream in = new BufferedInputStream(socket.getInputStream());
+          while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            out.write(REQUEST);
+            out.flush();
+            readResponse(in);
+            if (count == latencies.length) {
+              latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+          }
+        } catch (IOException e) {
+          LOGGER.error(e.getMessage(), e);
+        }
+        samples[index] = latencies;
+        counts[index] = count;
+        done.countDown();
+      });
+    }
+
+    done.await();
+    executor.shutdown();
+
+    long[] all = new long[Arrays.stream(counts).sum()];
+    int offset = 0;
+    for (int i = 0; i < CONNECTIONS; i++) {
+      System.arraycopy(samples[i], 0, all, offset, counts[i]);
+      offset += counts[i];
+    }
+    return all;
+  }
+
+  /**
+   * Reads the headers then `Content-Length` bytes of body
+   */
+  private void readResponse(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int contentLength = 0;
+    int b;
+    while (-1 != (b = in.read())) {
+      if ('\n' != b) {
+        if ('\r' != b) {
+          line.append((char) b);
+        }
+        continue;
+      }
+
+      if (0 == line.length()) {
+        break;
+      }
+      String header = line.toString();
+      if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+        contentLength = Integer.parseInt(header.substring(15).trim());
+      }
+      line.setLength(0);
+    }
+
+    for (int i = 0; i < contentLength; i++) {
+      if (-1 == in.read()) {
+        throw new IOException("Connection closed");
+      }
+    }
+  }
+
+  private long micros(long[] sorted, double percentile) {
+    if (0 == sorted.length) {
+      return 0;
+    }
+    int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+    return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, index)]);
+  }
+}
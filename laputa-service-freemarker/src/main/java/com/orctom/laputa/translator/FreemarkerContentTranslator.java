@@ -8,11 +8,12 @@ import com.orctom.laputa.service.translator.content.TemplateContentTranslator;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
 import freemarker.template.TemplateExceptionHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
@@ -42,14 +43,15 @@ public class FreemarkerContentTranslator extends TemplateContentTranslator<Templ
   }
 
   @Override
-  public byte[] translate(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) throws IOException {
+  public void translate(RequestWrapper requestWrapper,
+                        ResponseWrapper responseWrapper,
+                        ByteBuf buffer) throws IOException {
     try {
       Template template = getTemplate(requestWrapper, responseWrapper);
-      ByteArrayOutputStream out = new ByteArrayOutputStream();
-      Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+      Writer writer = new BufferedWriter(new OutputStreamWriter(new ByteBufOutputStream(buffer), getCharset()));
       Map<String, Object> model = getModel(responseWrapper);
       template.process(model, writer);
-      return out.toByteArray();
+      writer.flush();
     } catch (Exception e) {
       throw new TemplateProcessingException(e.getMessage(), e);
     }
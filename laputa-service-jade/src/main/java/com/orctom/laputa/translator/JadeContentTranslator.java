@@ -8,11 +8,12 @@ import com.orctom.laputa.service.translator.content.TemplateContentTranslator;
 import de.neuland.jade4j.Jade4J;
 import de.neuland.jade4j.model.JadeModel;
 import de.neuland.jade4j.template.JadeTemplate;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
@@ -26,14 +27,15 @@ public class JadeContentTranslator extends TemplateContentTranslator<JadeTemplat
   private static final String TEMPLATE_SUFFIX = ".jade";
 
   @Override
-  public byte[] translate(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) throws IOException {
+  public void translate(RequestWrapper requestWrapper,
+                        ResponseWrapper responseWrapper,
+                        ByteBuf buffer) throws IOException {
     try {
       JadeTemplate template = getTemplate(requestWrapper, responseWrapper);
-      ByteArrayOutputStream out = new ByteArrayOutputStream();
-      Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+      Writer writer = new BufferedWriter(new OutputStreamWriter(new ByteBufOutputStream(buffer), getCharset()));
       Map<String, Object> model = getModel(responseWrapper);
       template.process(new JadeModel(model), writer);
-      return out.toByteArray();
+      writer.flush();
     } catch (ExecutionException e) {
       throw new TemplateProcessingException(e.getMessage(), e);
     }
@@ -6,6 +6,7 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.orctom.laputa.service.config.Configurator;
 import com.orctom.laputa.service.model.MediaType;
+import com.orctom.laputa.service.model.PriorityLevel;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
 import com.orctom.laputa.service.translator.response.FileResponseTranslator;
@@ -115,6 +116,11 @@ public class WebRequestProcessor implements RequestProcessor {
     serveFromFileSystem(requestWrapper, responseWrapper, staticFilePath, uri);
   }
 
+  @Override
+  public PriorityLevel getPriority(String path) {
+    return null == getStaticFileMappingPath(path) ? null : PriorityLevel.LOW;
+  }
+
   private String getUri(RequestWrapper requestWrapper) {
     String uri = requestWrapper.getPath();
 
@@ -3,6 +3,7 @@ package com.orctom.laputa.service.translator.response;
 import com.orctom.laputa.service.config.Configurator;
 import com.orctom.laputa.service.model.MediaType;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.util.HttpStreams;
 import com.typesafe.config.Config;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -66,10 +67,13 @@ public class FileResponseTranslator extends AbstractResponseTranslator implement
         res.headers().set(CONNECTION, HttpHeaderValues.KEEP_ALIVE);
       }
 
+      HttpStreams.copyStreamId(ctx, req, res);
+
       ctx.write(res);
 
+      // zero-copy only when the bytes go to the socket as they are
       ChannelFuture lastContentFuture;
-      if (null == ctx.pipeline().get(SslHandler.class)) {
+      if (null == ctx.pipeline().get(SslHandler.class) && !HttpStreams.isHttp2(req)) {
         ctx.write(new DefaultFileRegion(file.getChannel(), 0, contentLength), ctx.newProgressivePromise());
         lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
 
@@ -18,14 +18,54 @@ public class Constants {
   public static final String CFG_PATH = "path";
   public static final String CFG_UPLOAD_DIR = "upload.dir";
   public static final String CFG_SERVER_USE_EPOLL = "server.epoll";
+  public static final String CFG_SERVER_TRANSPORT = "server.transport";
+  public static final String CFG_SERVER_REUSE_PORT = "server.reusePort";
+  public static final String CFG_SERVER_CONNECTIONS_MAX = "server.connections.max";
+  public static final String CFG_SERVER_CONNECTIONS_PER_IP = "server.connections.perIp";
+  public static final String CFG_SERVER_CONNECTIONS_IDLE_TIMEOUT = "server.connections.idleTimeout";
+  public static final String CFG_SERVER_CONNECTIONS_HEADER_TIMEOUT = "server.connections.headerTimeout";
+  public static final String CFG_SERVER_WRITE_BUFFER_LOW = "server.writeBuffer.low";
+  public static final String CFG_SERVER_WRITE_BUFFER_HIGH = "server.writeBuffer.high";
+  public static final String CFG_SERVER_SHUTDOWN_TIMEOUT = "server.shutdown.timeout";
+  public static final String CFG_SERVER_EVENT_LOOPS_BOSS = "server.eventLoops.boss";
+  public static final String CFG_SERVER_EVENT_LOOPS_WORKERS = "server.eventLoops.workers";
+  public static final String CFG_SERVER_EVENT_LOOPS_IO_RATIO = "server.eventLoops.ioRatio";
   public static final String CFG_STATIC_FILE_CACHE = "static.file.cache";
   public static final String CFG_SERVER_HTTP_PORT = "server.http.port";
   public static final String CFG_SERVER_HTTPS_PORT = "server.https.port";
+  public static final String CFG_SERVER_DOMAIN_SOCKET = "server.domainSocket";
+  public static final String CFG_SERVER_HTTP2_ENABLED = "server.http2.enabled";
+  public static final String CFG_SERVER_PIPELINING_LIMIT = "server.pipelining.limit";
   public static final String CFG_SERVER_CORS_ALLOWS_ORIGINS = "server.cors.allows.origins";
   public static final String CFG_SERVER_CORS_ALLOWS_CREDENTIALS = "server.cors.allows.credentials";
   public static final String CFG_WEBSOCKET_PATH = "server.websocket.path";
   public static final String CFG_THROTTLE = "server.throttle";
+  public static final String CFG_SERVER_ROUTE_CACHE_SIZE = "server.routeCache.size";
   public static final String CFG_POSTDATA_USEDISK_THRESHOLD = "server.postData.useDisk.threshold";
+  public static final String CFG_SERVER_BODY_MAX_LENGTH = "server.body.maxLength";
+  public static final String CFG_SERVER_BODY_MULTIPART_MAX_LENGTH = "server.body.multipart.maxLength";
+  public static final String CFG_SERVER_DISPATCH = "server.dispatch";
+  public static final String CFG_SERVER_EXECUTOR_THREADS = "server.executor.threads";
+  public static final String CFG_SERVER_EXECUTOR_QUEUE = "server.executor.queue";
+  public static final String CFG_SERVER_EXECUTOR_VIRTUAL_MAX_IN_FLIGHT = "server.executor.virtual.maxInFlight";
+  public static final String CFG_SERVER_LIMITER_ENABLED = "server.limiter.enabled";
+  public static final String CFG_SERVER_LIMITER_INITIAL = "server.limiter.initial";
+  public static final String CFG_SERVER_LIMITER_MIN = "server.limiter.min";
+  public static final String CFG_SERVER_LIMITER_MAX = "server.limiter.max";
+  public static final String CFG_SERVER_LIMITER_QUEUE = "server.limiter.queue";
+  public static final String CFG_SERVER_LIMITER_QUEUE_TIMEOUT = "server.limiter.queueTimeout";
+  public static final String CFG_SERVER_QUOTA_ENABLED = "server.quota.enabled";
+  public static final String CFG_SERVER_QUOTA_LIMIT = "server.quota.limit";
+  public static final String CFG_SERVER_QUOTA_WINDOW = "server.quota.window";
+  public static final String CFG_SERVER_QUOTA_HEADER = "server.quota.header";
+  public static final String CFG_SERVER_QUOTA_SKETCH_WIDTH = "server.quota.sketch.width";
+  public static final String CFG_SERVER_QUOTA_SKETCH_DEPTH = "server.quota.sketch.depth";
+  public static final String CFG_SERVER_QUOTA_TOP = "server.quota.top";
+  public static final String CFG_SERVER_SHEDDING_ENABLED = "server.shedding.enabled";
+  public static final String CFG_SERVER_SHEDDING_INTERVAL = "server.shedding.interval";
+  public static final String CFG_SERVER_SHEDDING_LAG = "server.shedding.lag";
+  public static final String CFG_SERVER_SHEDDING_PENDING_TASKS = "server.shedding.pendingTasks";
+  public static final String CFG_SERVER_SHEDDING_PRIORITIES = "server.shedding.priorities";
   public static final String CFG_SECURITY_RESOURCES = "security.resources";
   public static final String CFG_SECURITY_NON_RESOURCES = "security.non-resources";
 
@@ -5,6 +5,8 @@ import com.orctom.laputa.service.config.Configurator;
 import com.orctom.laputa.service.config.MappingConfig;
 import com.orctom.laputa.service.controller.DefaultController;
 import com.orctom.laputa.service.internal.Bootstrapper;
+import com.orctom.laputa.service.internal.EventLoops;
+import com.orctom.laputa.service.internal.GracefulShutdown;
 import com.orctom.laputa.service.lifecycle.PostStart;
 import com.orctom.laputa.service.lifecycle.PreStart;
 import com.orctom.laputa.service.translator.content.ContentTranslator;
@@ -20,7 +22,10 @@ import org.springframework.context.annotation.Configuration;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.orctom.laputa.service.Constants.*;
 
@@ -36,6 +41,12 @@ public class LaputaService {
 
   private AnnotationConfigApplicationContext applicationContext;
 
+  private EventLoops eventLoops;
+
+  private final List<Bootstrapper> bootstrappers = new ArrayList<>();
+
+  private final AtomicBoolean shutdown = new AtomicBoolean();
+
   private LaputaService() {
   }
 
@@ -62,9 +73,21 @@ public class LaputaService {
     createApplicationContext(configurationClass);
     loadResponseTranslators();
     startup();
+    Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "laputa-shutdown"));
     postStart();
   }
 
+  /**
+   * Stops accepting and waits for the requests in flight before releasing the event loops,
+   * called by the shutdown hook as well.
+   */
+  public void shutdown() {
+    if (null == eventLoops || !shutdown.compareAndSet(false, true)) {
+      return;
+    }
+    new GracefulShutdown(bootstrappers, eventLoops).run();
+  }
+
   private void validate(Class<?> configurationClass) {
     if (null == configurationClass) {
       throw new IllegalArgException("Null class to 'run()'!");
@@ -90,11 +113,14 @@ public class LaputaService {
 
     LOGGER.info("Starting service...");
     boolean bootstrapHttpsService = config.hasPath(CFG_SERVER_HTTPS_PORT);
+    boolean bootstrapHttpService = config.hasPath(CFG_SERVER_HTTP_PORT);
+    int listeners = bootstrapHttpsService && bootstrapHttpService ? 2 : 1;
+    eventLoops = new EventLoops(listeners);
+
     if (bootstrapHttpsService) {
       bootstrapHttpsService(config.getInt(CFG_SERVER_HTTPS_PORT));
     }
 
-    boolean bootstrapHttpService = config.hasPath(CFG_SERVER_HTTP_PORT);
     if (bootstrapHttpService) {
       bootstrapHttpService(config.getInt(CFG_SERVER_HTTP_PORT));
     }
@@ -109,11 +135,16 @@ public class LaputaService {
   }
 
   private void bootstrapHttpsService(int port) {
-    new Bootstrapper(port, true).start();
+    bootstrap(new Bootstrapper(port, true, eventLoops));
   }
 
   private void bootstrapHttpService(int port) {
-    new Bootstrapper(port, false).start();
+    bootstrap(new Bootstrapper(port, false, eventLoops));
+  }
+
+  private void bootstrap(Bootstrapper bootstrapper) {
+    bootstrappers.add(bootstrapper);
+    bootstrapper.start();
   }
 
   private void printAsciiArt() {
@@ -0,0 +1,22 @@
+package com.orctom.laputa.service.annotation;
+
+import com.orctom.laputa.service.model.PriorityLevel;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Which lane the requests of a route go through when shedding load
+ */
+@Inherited
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Priority {
+
+  PriorityLevel value();
+}
@@ -0,0 +1,32 @@
+package com.orctom.laputa.service.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Rate limit of a route, requests over it are rejected with `429 Too Many Requests` right after routing.
+ * On a controller it applies to each of its routes not annotated by themselves.
+ */
+@Inherited
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Throttle {
+
+  double permitsPerSecond();
+
+  /**
+   * Permits taken by each request
+   */
+  int cost() default 1;
+
+  /**
+   * Routes of the same group share one bucket, they have to declare the same `permitsPerSecond`.
+   * Each annotated method has its own bucket if not specified.
+   */
+  String group() default "";
+}
@@ -1,6 +1,9 @@
 package com.orctom.laputa.service.config;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.orctom.laputa.exception.IllegalArgException;
 import com.orctom.laputa.service.annotation.DELETE;
 import com.orctom.laputa.service.annotation.GET;
@@ -9,11 +12,16 @@ import com.orctom.laputa.service.annotation.OPTIONS;
 import com.orctom.laputa.service.annotation.POST;
 import com.orctom.laputa.service.annotation.PUT;
 import com.orctom.laputa.service.annotation.Path;
+import com.orctom.laputa.service.annotation.Priority;
 import com.orctom.laputa.service.annotation.RedirectTo;
+import com.orctom.laputa.service.annotation.Throttle;
 import com.orctom.laputa.service.controller.DefaultController;
 import com.orctom.laputa.service.model.HTTPMethod;
 import com.orctom.laputa.service.model.PathTrie;
 import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.service.model.RouteMatch;
+import com.orctom.laputa.utils.SimpleMetrics;
+import com.orctom.laputa.utils.TokenBucket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
@@ -21,16 +29,18 @@ import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.stereotype.Controller;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-import static com.orctom.laputa.service.Constants.PATH_SEPARATOR;
-import static com.orctom.laputa.service.Constants.SIGN_DOT;
+import static com.orctom.laputa.service.Constants.CFG_SERVER_ROUTE_CACHE_SIZE;
+import static com.orctom.laputa.service.Constants.PATH_404;
 
 /**
  * Holding url mappings...
@@ -41,14 +51,34 @@ public class MappingConfig {
   private static final Logger LOGGER = LoggerFactory.getLogger(MappingConfig.class);
   private static final Pattern PATTERN_DOUBLE_SLASHES = Pattern.compile("/+");
   private static final Pattern PATTERN_TAIL_SLASH = Pattern.compile("/$");
-  private static final String KEY_PATH_PARAM = "{*}";
-  private static final String MAPPING_404 = "/404/@get";
+  private static final String GAUGE_ROUTE_CACHE_HIT_RATE = "routeCache.hitRate";
+  private static final String GAUGE_ROUTE_CACHE_SIZE = "routeCache.size";
   private static final MappingConfig INSTANCE = new MappingConfig();
-  private static final String INDEX = "index";
-  private Map<String, RequestMapping> staticMappings = new HashMap<>();
-  private PathTrie wildcardMappings = new PathTrie();
+  private final long routeCacheSize;
+
+  /**
+   * The buckets of the throttle groups of the published mappings, guarded by `this`
+   */
+  private Map<String, ThrottleGroup> throttles = new HashMap<>();
+
+  /**
+   * All the mappings in the order they got registered, the source of the snapshots, guarded by `this`
+   */
+  private List<RequestMapping> registered = new ArrayList<>();
+
+  /**
+   * Immutable, replaced as a whole on (un)registering, read without locks
+   */
+  private volatile Routes routes;
 
   private MappingConfig() {
+    routeCacheSize = Configurator.getInstance().getConfig().getLong(CFG_SERVER_ROUTE_CACHE_SIZE);
+    if (routeCacheSize > 0) {
+      LOGGER.info("Route cache size: {}", routeCacheSize);
+    }
+    PathTrie empty = new PathTrie();
+    empty.compile();
+    routes = new Routes(empty, routeCacheSize);
   }
 
   public static MappingConfig getInstance() {
@@ -56,137 +86,169 @@ public class MappingConfig {
   }
 
   public RequestMapping getMapping(String uri, HTTPMethod httpMethod) {
-    String path = uri;
-
-    int dotIndex = path.lastIndexOf(SIGN_DOT);
-    if (dotIndex > 0) {
-      path = path.substring(0, dotIndex);
-    }
+    RouteMatch match = match(uri, httpMethod);
+    return null == match ? null : match.getMapping();
+  }
 
-    boolean isPathEndWithSlash = path.endsWith(PATH_SEPARATOR);
-    String key = isPathEndWithSlash ? path + httpMethod.getKey() : path + PATH_SEPARATOR + httpMethod.getKey();
+  /**
+   * @return the mapping with the path params of the uri, null if not found
+   */
+  public RouteMatch match(String uri, HTTPMethod httpMethod) {
+    return routes.match(uri, httpMethod);
+  }
 
-    RequestMapping handler = staticMappings.get(key);
-    if (null != handler) {
-      return handler;
+  public void registerGauges(SimpleMetrics metrics) {
+    if (routeCacheSize <= 0) {
+      return;
     }
 
-    if (isPathEndWithSlash) {
-      handler = staticMappings.get(path + INDEX + httpMethod.getKey());
-      if (null != handler) {
-        return handler;
-      }
-    }
+    metrics.gauge(GAUGE_ROUTE_CACHE_HIT_RATE, () -> String.format("%.3f", routes.getCacheStats().hitRate()));
+    metrics.gauge(GAUGE_ROUTE_CACHE_SIZE, () -> String.valueOf(routes.getCacheSize()));
+  }
 
-    handler = getHandlerForWildcardUri(path, httpMethod);
-    if (null != handler) {
-      return handler;
-    }
+  public RequestMapping _404() {
+    return getMapping(PATH_404, HTTPMethod.GET);
+  }
 
-    if (isPathEndWithSlash) {
-      handler = getHandlerForWildcardUri(path + INDEX, httpMethod);
-      if (null != handler) {
-        return handler;
-      }
+  public synchronized void scan(ApplicationContext applicationContext) {
+    Map<String, Object> controllers = applicationContext.getBeansWithAnnotation(Controller.class);
+    if (null == controllers || controllers.isEmpty()) {
+      throw new IllegalArgException("No @Controllers found in Spring context.");
     }
 
-    return null;
+    List<RequestMapping> mappings = new ArrayList<>();
+    mappings.addAll(createMappings(applicationContext.getBean(DefaultController.class), DefaultController.class));
+    controllers.values().forEach(bean -> mappings.addAll(createMappings(bean, bean.getClass())));
+    publish(mappings);
+
+    logMappingInfo();
   }
 
-  public RequestMapping _404() {
-    return staticMappings.get(MAPPING_404);
+  /**
+   * Adds the mappings of a controller at runtime (e.g. plugins, feature flags),
+   * the requests in flight keep on the routes they were matched with.
+   * @throws IllegalArgumentException if its @Paths conflict with the existing ones, nothing gets changed then
+   */
+  public synchronized void register(Object controller) {
+    List<RequestMapping> added = createMappings(controller, controller.getClass());
+    List<RequestMapping> mappings = new ArrayList<>(registered.size() + added.size());
+    mappings.addAll(registered);
+    mappings.addAll(added);
+    publish(mappings);
+
+    added.forEach(mapping -> LOGGER.info("registered: {}", mapping));
   }
 
   /**
-   * There are 4 types of `paths`:<br/>
-   * <li>1) static at middle of the uri</li>
-   * <li>2) static at end of the uri</li>
-   * <li>3) dynamic at middle of the uri</li>
-   * <li>4) dynamic at end of the uri</li>
+   * Removes the mappings of a controller registered before, the {@link DefaultController} ones it overrode come back
    */
-  private RequestMapping getHandlerForWildcardUri(String uri, HTTPMethod httpMethod) {
-    String[] paths = uri.split("/");
-    if (paths.length < 2) {
-      return null;
+  public synchronized void unregister(Object controller) {
+    List<RequestMapping> mappings = new ArrayList<>(registered.size());
+    for (RequestMapping mapping : registered) {
+      if (controller == mapping.getTarget()) {
+        LOGGER.info("unregistered: {}", mapping);
+      } else {
+        mappings.add(mapping);
+      }
     }
+    publish(mappings);
+  }
 
-    PathTrie parent = wildcardMappings;
+  /**
+   * Builds the new snapshot off the request path, then swaps it in with the route cache starting over
+   */
+  private void publish(List<RequestMapping> mappings) {
+    Map<String, ThrottleGroup> groups = createThrottles(mappings);
+    PathTrie trie = new PathTrie();
+    for (RequestMapping mapping : mappings) {
+      RequestMapping replaced = trie.add(mapping.getUriPattern(), HTTPMethod.of(mapping.getHttpMethod()), mapping);
+      if (null != replaced && !(replaced.getTarget() instanceof DefaultController)) {
+        throw new IllegalArgumentException("Conflicts found in configured @Path:\n" +
+            mapping.getUriPattern() + ", " + mapping.getHttpMethod() +
+            "\n\t\t" + replaced.getHandlerMethod().getJavaMethod().toString() +
+            "\n\t\t" + mapping.getHandlerMethod().getJavaMethod().toString());
+      }
+    }
+    trie.compile();
 
-    for (int i = 1; i < paths.length; i++) {
-      String path = paths[i];
-      if (Strings.isNullOrEmpty(path)) {
-        continue;
+    for (RequestMapping mapping : mappings) {
+      ThrottleGroup group = groups.get(mapping.getThrottleGroup());
+      if (null != group) {
+        mapping.setThrottleBucket(group.bucket);
       }
+    }
+    routes = new Routes(trie, routeCacheSize);
+    registered = mappings;
+    throttles = groups;
 
-      boolean isEndPath = i == paths.length - 1;
+    logConflicts(trie);
+  }
 
-      // 1) and 2)
-      PathTrie child = parent.getChildren().get(path);
-      if (null != child) {
-        if (isEndPath) {
-          return getRequestMappingFromChildren(httpMethod, child);
-        }
-        parent = child;
+  /**
+   * One bucket per throttle group of the mappings, the groups still published keep theirs along with its state;
+   * the ones gone are dropped, a controller registered again starts over with a full bucket.
+   * @throws IllegalArgumentException if the routes of a group declare different rates
+   */
+  private Map<String, ThrottleGroup> createThrottles(List<RequestMapping> mappings) {
+    Map<String, ThrottleGroup> groups = new HashMap<>();
+    for (RequestMapping mapping : mappings) {
+      String key = mapping.getThrottleGroup();
+      if (null == key) {
         continue;
       }
+      double permitsPerSecond = mapping.getThrottlePermitsPerSecond();
+      ThrottleGroup group = groups.get(key);
+      if (null == group) {
+        groups.put(key, new ThrottleGroup(permitsPerSecond, Math.max(permitsPerSecond, mapping.getThrottleCost())));
 
-      // 3) and 4)
-      child = parent.getChildren().get(KEY_PATH_PARAM);
-      if (null != child) {
-        if (isEndPath) {
-          return getRequestMappingFromChildren(httpMethod, child);
-        }
-        parent = child;
+      } else if (group.permitsPerSecond != permitsPerSecond) {
+        throw new IllegalArgumentException(
+            "Different permitsPerSecond in Throttle group: " + key + ", " + group.permitsPerSecond + " and " +
+                permitsPerSecond + " on " + mapping.getHandlerMethod().getJavaMethod().toString());
+
+      } else {
+        group.burst = Math.max(group.burst, mapping.getThrottleCost());
       }
     }
 
-    return null;
-  }
-
-  private RequestMapping getRequestMappingFromChildren(HTTPMethod httpMethod, PathTrie child) {
-    Map<String, PathTrie> children = child.getChildren();
-    if (null == children || children.isEmpty()) {
-      return null;
+    for (Map.Entry<String, ThrottleGroup> entry : groups.entrySet()) {
+      ThrottleGroup group = entry.getValue();
+      ThrottleGroup published = throttles.get(entry.getKey());
+      group.bucket = null != published && published.permitsPerSecond == group.permitsPerSecond &&
+          published.burst == group.burst ?
+          published.bucket : new TokenBucket(group.permitsPerSecond, group.burst);
     }
-    PathTrie node = children.get(httpMethod.getKey());
-    if (null == node) {
-      return null;
-    }
-    return node.getHandler();
+    return groups;
   }
 
-  public void scan(ApplicationContext applicationContext) {
-    Map<String, Object> controllers = applicationContext.getBeansWithAnnotation(Controller.class);
-    if (null == controllers || controllers.isEmpty()) {
-      throw new IllegalArgException("No @Controllers found in Spring context.");
+  private void logConflicts(PathTrie trie) {
+    List<String> conflicts = trie.getConflicts();
+    if (conflicts.isEmpty()) {
+      return;
     }
 
-    configureMappings(applicationContext.getBean(DefaultController.class), DefaultController.class);
-    controllers.values().forEach(bean -> configureMappings(bean, bean.getClass()));
-
-    logMappingInfo();
+    LOGGER.warn("{} overlapping mappings found, the former ones take precedence:", conflicts.size());
+    for (String conflict : conflicts) {
+      LOGGER.warn(conflict);
+    }
   }
 
   private void logMappingInfo() {
     if (LOGGER.isInfoEnabled()) {
-      LOGGER.info("static mappings:");
-      for (RequestMapping handler : new TreeMap<>(staticMappings).values()) {
-        LOGGER.info(handler.toString());
-      }
-
-      LOGGER.info("dynamic mappings:");
-      for (RequestMapping handler : wildcardMappings.getChildrenMappings()) {
-        LOGGER.info(handler.toString());
-      }
+      LOGGER.info("mappings:");
+      routes.trie.getChildrenMappings().stream()
+          .sorted(Comparator.comparing(RequestMapping::getUriPattern))
+          .forEach(handler -> LOGGER.info(handler.toString()));
     }
   }
 
-  private void configureMappings(Object instance, Class<?> clazz) {
+  private List<RequestMapping> createMappings(Object instance, Class<?> clazz) {
     String basePath = "";
     if (clazz.isAnnotationPresent(Path.class)) {
       basePath = clazz.getAnnotation(Path.class).value();
     }
 
+    List<RequestMapping> mappings = new ArrayList<>();
     for (Method method : clazz.getMethods()) {
       Path path = AnnotationUtils.findAnnotation(method, Path.class);
       if (null == path) {
@@ -197,9 +259,12 @@ public class MappingConfig {
         throw new IllegalArgumentException(
             "Empty value of Path annotation on " + clazz.getCanonicalName() + " " + method.getName());
       }
-      String uri = basePath + pathValue;
-      addToMappings(instance, clazz, method, uri);
+      String uri = normalize(basePath + pathValue);
+      for (HTTPMethod httpMethod : getSupportedHTTPMethods(method)) {
+        mappings.add(createMapping(instance, clazz, method, uri, httpMethod.getKey()));
+      }
     }
+    return mappings;
   }
 
   private List<HTTPMethod> getSupportedHTTPMethods(Method method) {
@@ -219,30 +284,6 @@ public class MappingConfig {
     return supportedHTTPMethods;
   }
 
-  private void addToMappings(Object instance, Class<?> clazz, Method method, String rawPath) {
-    String uri = normalize(rawPath);
-    List<HTTPMethod> httpMethods = getSupportedHTTPMethods(method);
-    if (null == httpMethods || httpMethods.isEmpty()) {
-      return;
-    }
-
-    for (HTTPMethod httpMethod : httpMethods) {
-      String httpMethodKey = httpMethod.getKey();
-      if (uri.contains("{")) {
-        addToWildCardMappings(instance, clazz, method, uri, httpMethodKey);
-      } else {
-        RequestMapping mapping = staticMappings.put(
-            uri + "/" + httpMethodKey,
-            new RequestMapping(uri, instance, clazz, method, httpMethodKey, getRedirectTo(method))
-        );
-        if (null != mapping && !(mapping.getTarget() instanceof DefaultController)) {
-          throw new IllegalArgumentException("Conflicts found in configured @Path:\n" + uri + ", " + httpMethodKey +
-              "\n\t\t" + mapping.getHandlerMethod().toString() + "\n\t\t" + method.toString());
-        }
-      }
-    }
-  }
-
   private String normalize(String uri) {
     uri = "/" + uri;
     uri = PATTERN_DOUBLE_SLASHES.matcher(uri).replaceAll("/");
@@ -250,29 +291,45 @@ public class MappingConfig {
     return uri;
   }
 
-  private void addToWildCardMappings(Object instance, Class<?> clazz, Method method, String uri, String httpMethodKey) {
-    String[] paths = uri.split("/");
+  private RequestMapping createMapping(Object instance,
+                                       Class<?> clazz,
+                                       Method method,
+                                       String uri,
+                                       String httpMethodKey) {
+    RequestMapping mapping = new RequestMapping(uri, instance, clazz, method, httpMethodKey, getRedirectTo(method));
+    configureThrottle(mapping, clazz, method);
+    configurePriority(mapping, clazz, method);
+    return mapping;
+  }
 
-    if (paths.length < 2) {
-      return;
+  private void configurePriority(RequestMapping mapping, Class<?> clazz, Method method) {
+    Priority priority = AnnotationUtils.findAnnotation(method, Priority.class);
+    if (null == priority) {
+      priority = AnnotationUtils.findAnnotation(clazz, Priority.class);
     }
+    if (null != priority) {
+      mapping.setPriority(priority.value());
+    }
+  }
 
-    Map<String, PathTrie> children = wildcardMappings.getChildren();
-
-    for (String path : paths) {
-      if (Strings.isNullOrEmpty(path)) {
-        continue;
-      }
-
-      boolean containsParam = path.contains("{");
-      String pathKey = containsParam ? KEY_PATH_PARAM : path;
-      PathTrie child = children.computeIfAbsent(pathKey, k -> new PathTrie());
+  private void configureThrottle(RequestMapping mapping, Class<?> clazz, Method method) {
+    Throttle throttle = AnnotationUtils.findAnnotation(method, Throttle.class);
+    if (null == throttle) {
+      throttle = AnnotationUtils.findAnnotation(clazz, Throttle.class);
+    }
+    if (null == throttle) {
+      return;
+    }
 
-      children = child.getChildren();
+    double permitsPerSecond = throttle.permitsPerSecond();
+    int cost = throttle.cost();
+    if (permitsPerSecond <= 0 || cost <= 0) {
+      throw new IllegalArgumentException(
+          "Expecting positive permitsPerSecond and cost of Throttle annotation on " + method.toString());
     }
 
-    PathTrie leaf = new PathTrie(uri, instance, clazz, method, httpMethodKey, getRedirectTo(method));
-    children.put(httpMethodKey, leaf);
+    String group = Strings.isNullOrEmpty(throttle.group()) ? method.toString() : throttle.group();
+    mapping.setThrottle(group, permitsPerSecond, cost);
   }
 
   private String getRedirectTo(Method method) {
@@ -286,4 +343,70 @@ public class MappingConfig {
     }
     return redirectToValue;
   }
+
+  /**
+   * Snapshot of the mappings, with its own route cache so no stale matches outlive it
+   */
+  private static class Routes {
+
+    private final PathTrie trie;
+
+    /**
+     * Dynamic routes matched per http method by raw path, null if `server.routeCache.size` is not set
+     */
+    private final Map<HTTPMethod, Cache<String, RouteMatch>> cache;
+
+    private Routes(PathTrie trie, long cacheSize) {
+      this.trie = trie;
+      if (cacheSize > 0) {
+        cache = new EnumMap<>(HTTPMethod.class);
+        for (HTTPMethod httpMethod : HTTPMethod.values()) {
+          cache.put(httpMethod, CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build());
+        }
+      } else {
+        cache = null;
+      }
+    }
+
+    private RouteMatch match(String uri, HTTPMethod httpMethod) {
+      if (null == cache) {
+        return trie.match(uri, httpMethod);
+      }
+
+      Cache<String, RouteMatch> routeCache = cache.get(httpMethod);
+      RouteMatch match = routeCache.getIfPresent(uri);
+      if (null != match) {
+        return match;
+      }
+
+      match = trie.match(uri, httpMethod);
+      if (null != match && match.hasPathParams()) {
+        match.getPathParams(); // extracted once, the hits skip it too
+        routeCache.put(uri, match);
+      }
+      return match;
+    }
+
+    private CacheStats getCacheStats() {
+      return cache.values().stream()
+          .map(Cache::stats)
+          .reduce(new CacheStats(0, 0, 0, 0, 0, 0), CacheStats::plus);
+    }
+
+    private long getCacheSize() {
+      return cache.values().stream().mapToLong(Cache::size).sum();
+    }
+  }
+
+  private static class ThrottleGroup {
+
+    private final double permitsPerSecond;
+    private double burst;
+    private TokenBucket bucket;
+
+    private ThrottleGroup(double permitsPerSecond, double burst) {
+      this.permitsPerSecond = permitsPerSecond;
+      this.burst = burst;
+    }
+  }
 }
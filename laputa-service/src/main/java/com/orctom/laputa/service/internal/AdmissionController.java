@@ -0,0 +1,51 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.utils.SimpleMetrics;
+import com.orctom.laputa.utils.TokenBucket;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides on the I/O thread whether a request is let in, before anything of it got decoded.
+ * Never blocks, rejected requests get a `429 Too Many Requests` from {@link RejectedResponses}.
+ */
+class AdmissionController {
+
+  private static final String GAUGE_ADMITTED = "throttle.admitted";
+  private static final String GAUGE_REJECTED = "throttle.rejected";
+
+  private final TokenBucket bucket;
+
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * @param permitsPerSecond null to let everything in
+   */
+  AdmissionController(Integer permitsPerSecond) {
+    this.bucket = null == permitsPerSecond ? null : new TokenBucket(permitsPerSecond);
+  }
+
+  void registerGauges(SimpleMetrics metrics) {
+    if (null == bucket) {
+      return;
+    }
+
+    metrics.gauge(GAUGE_ADMITTED, () -> String.valueOf(admitted.sum()));
+    metrics.gauge(GAUGE_REJECTED, () -> String.valueOf(rejected.sum()));
+  }
+
+  boolean admit() {
+    if (null == bucket) {
+      return true;
+    }
+
+    if (bucket.tryAcquire()) {
+      admitted.increment();
+      return true;
+    }
+
+    rejected.increment();
+    return false;
+  }
+}
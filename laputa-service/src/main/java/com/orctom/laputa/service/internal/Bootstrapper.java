@@ -6,19 +6,25 @@ import com.orctom.laputa.utils.HostUtils;
 import com.typesafe.config.Config;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollServerSocketChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.ServerSocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.handler.codec.http.cors.CorsConfig;
 import io.netty.handler.codec.http.cors.CorsConfigBuilder;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +33,9 @@ import java.io.File;
 import java.io.IOException;
 import java.security.cert.CertificateException;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static com.orctom.laputa.service.Constants.*;
 
@@ -40,57 +49,77 @@ public class Bootstrapper extends Thread {
 
   private static LaputaRequestProcessor requestProcessor = new LaputaRequestProcessor();
 
+  private static ConnectionLimiter connectionLimiter =
+      ConnectionLimiter.create(Configurator.getInstance().getConfig());
+
+  private static final Set<EventLoopGroup> WATCHED = ConcurrentHashMap.newKeySet();
+
   private int port;
   private boolean useSSL;
 
   private SslContext sslContext;
 
-  private EventLoopGroup bossGroup;
-  private EventLoopGroup workerGroup;
+  private EventLoops eventLoops;
+
+  private final List<Channel> listeners = new CopyOnWriteArrayList<>();
 
-  public Bootstrapper(int port, boolean useSSL) {
+  public Bootstrapper(int port, boolean useSSL, EventLoops eventLoops) {
     this.port = port;
     this.useSSL = useSSL;
+    this.eventLoops = eventLoops;
   }
 
   @Override
   public void run() {
     Config config = Configurator.getInstance().getConfig();
-    boolean useNativeEpoll = config.hasPath(CFG_SERVER_USE_EPOLL) && config.getBoolean(CFG_SERVER_USE_EPOLL);
-
-    Class<? extends ServerSocketChannel> channelClass;
-    if (useNativeEpoll) {
-      bossGroup = new EpollEventLoopGroup(1);
-      workerGroup = new EpollEventLoopGroup();
-      channelClass = EpollServerSocketChannel.class;
-
-    } else {
-      bossGroup = new NioEventLoopGroup(1);
-      workerGroup = new NioEventLoopGroup();
-      channelClass = NioServerSocketChannel.class;
-    }
+    EventLoopGroup workerGroup = eventLoops.getWorkerGroup();
+    ChannelOption<Boolean> reusePortOption = eventLoops.getReusePortOption();
+    watch(workerGroup);
 
     try {
       setupSSLContext();
 
+      LaputaServerInitializer initializer = new LaputaServerInitializer(
+          sslContext,
+          getCorsConfig(config),
+          getWebSocketPath(config),
+          requestProcessor,
+          eventLoops.getConnections()
+      );
+
       ServerBootstrap b = new ServerBootstrap();
       b.option(ChannelOption.SO_BACKLOG, 1024)
-          .group(bossGroup, workerGroup)
-          .channel(channelClass)
-          .handler(new LoggingHandler(LogLevel.INFO))
-          .childHandler(new LaputaServerInitializer(
-              sslContext,
-              getCorsConfig(config),
-              getWebSocketPath(config),
-              requestProcessor
-          ));
-
-      Channel ch = b.bind(port).sync().channel();
+          .group(eventLoops.getBossGroup(), workerGroup)
+          .channel(eventLoops.getServerChannelClass())
+          .handler(getListenerHandler())
+          .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, getWriteBufferWaterMark(config))
+          .childHandler(initializer);
+
+      if (null != reusePortOption) {
+        b.option(reusePortOption, true);
+        int count = eventLoops.getWorkerCount();
+        for (int i = 0; i < count; i++) {
+          listeners.add(b.bind(port).sync().channel());
+        }
+        LOGGER.info("Listening on port {} with {} SO_REUSEPORT listeners", port, count);
+
+      } else {
+        listeners.add(b.bind(port).sync().channel());
+      }
 
       String ip = HostUtils.getIP();
       LOGGER.warn("Service started {}{}:{}", (useSSL ? "https://" : "http://"), ip, port);
 
-      ch.closeFuture().sync();
+      if (!useSSL && config.hasPath(CFG_SERVER_DOMAIN_SOCKET)) {
+        Channel domainSocket = bindDomainSocket(config.getString(CFG_SERVER_DOMAIN_SOCKET), initializer);
+        if (null != domainSocket) {
+          listeners.add(domainSocket);
+        }
+      }
+
+      for (Channel listener : listeners) {
+        listener.closeFuture().sync();
+      }
 
     } catch (IllegalConfigException e) {
       LOGGER.error(e.getMessage());
@@ -106,6 +135,78 @@ public class Bootstrapper extends Thread {
     }
   }
 
+  /**
+   * Same pipeline as the plain http listener, for the callers on the same host.
+   * Linux with the epoll transport only.
+   */
+  private Channel bindDomainSocket(String path, LaputaServerInitializer initializer) throws InterruptedException {
+    if (!eventLoops.isEpoll()) {
+      LOGGER.warn("Domain socket listener needs the epoll transport, not binding: {}", path);
+      return null;
+    }
+
+    // left over by a previous run that did not get to clean up
+    File socketFile = new File(path);
+    if (socketFile.exists() && !socketFile.delete()) {
+      throw new IllegalConfigException("Failed to delete stale domain socket: " + socketFile.getAbsolutePath());
+    }
+
+    ServerBootstrap b = new ServerBootstrap();
+    b.option(ChannelOption.SO_BACKLOG, 1024)
+        .group(eventLoops.getBossGroup(), eventLoops.getWorkerGroup())
+        .channel(EpollServerDomainSocketChannel.class)
+        .handler(getListenerHandler())
+        .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+            getWriteBufferWaterMark(Configurator.getInstance().getConfig()))
+        .childHandler(initializer);
+
+    Channel channel = b.bind(new DomainSocketAddress(socketFile)).sync().channel();
+    LOGGER.warn("Service started unix:{}", socketFile.getAbsolutePath());
+    return channel;
+  }
+
+  private WriteBufferWaterMark getWriteBufferWaterMark(Config config) {
+    return new WriteBufferWaterMark(
+        (int) config.getBytes(CFG_SERVER_WRITE_BUFFER_LOW).longValue(),
+        (int) config.getBytes(CFG_SERVER_WRITE_BUFFER_HIGH).longValue()
+    );
+  }
+
+  private ChannelHandler getListenerHandler() {
+    if (null == connectionLimiter) {
+      return new LoggingHandler(LogLevel.INFO);
+    }
+
+    return new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(Channel ch) {
+        ch.pipeline().addLast(new LoggingHandler(LogLevel.INFO), connectionLimiter);
+      }
+    };
+  }
+
+  static LaputaRequestProcessor getRequestProcessor() {
+    return requestProcessor;
+  }
+
+  /**
+   * Stops accepting, the connections accepted so far are left open
+   */
+  void closeListeners() {
+    for (Channel listener : listeners) {
+      listener.close().awaitUninterruptibly();
+    }
+  }
+
+  /**
+   * The listeners share the worker event loops, watching them once
+   */
+  private static void watch(EventLoopGroup workerGroup) {
+    if (WATCHED.add(workerGroup)) {
+      requestProcessor.watch(workerGroup);
+    }
+  }
+
   private void setupSSLContext() throws CertificateException, SSLException {
     if (useSSL) {
       File certificate = new File(getConfigAsString("server.https.certificate"));
@@ -113,7 +214,34 @@ public class Bootstrapper extends Thread {
 
       File privateKey = new File(getConfigAsString("server.https.privateKey"));
       assertFileExist(privateKey, "Failed to find private key.");
-      sslContext = SslContextBuilder.forServer(certificate, privateKey).build();
+      sslContext = buildSSLContext(certificate, privateKey);
+    }
+  }
+
+  /**
+   * With ALPN offering h2 if enabled and supported, either by OpenSSL (netty-tcnative) or by the JDK
+   */
+  private SslContext buildSSLContext(File certificate, File privateKey) throws SSLException {
+    Config config = Configurator.getInstance().getConfig();
+    if (!config.getBoolean(CFG_SERVER_HTTP2_ENABLED)) {
+      return SslContextBuilder.forServer(certificate, privateKey).build();
+    }
+
+    try {
+      return SslContextBuilder.forServer(certificate, privateKey)
+          .sslProvider(OpenSsl.isAlpnSupported() ? SslProvider.OPENSSL : SslProvider.JDK)
+          .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+          .applicationProtocolConfig(new ApplicationProtocolConfig(
+              ApplicationProtocolConfig.Protocol.ALPN,
+              ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+              ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+              ApplicationProtocolNames.HTTP_2,
+              ApplicationProtocolNames.HTTP_1_1))
+          .build();
+
+    } catch (RuntimeException e) {
+      LOGGER.warn("ALPN not supported, https stays on HTTP/1.1: {}", e.getMessage());
+      return SslContextBuilder.forServer(certificate, privateKey).build();
     }
   }
 
@@ -169,7 +297,6 @@ public class Bootstrapper extends Thread {
 
   private void shutdown() {
     LOGGER.warn("shutting down {}...", useSSL ? "https" : "http");
-    bossGroup.shutdownGracefully();
-    workerGroup.shutdownGracefully();
+    eventLoops.release();
   }
 }
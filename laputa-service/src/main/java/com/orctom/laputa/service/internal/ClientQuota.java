@@ -0,0 +1,101 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.utils.HeavyHitters;
+import com.orctom.laputa.utils.SimpleMetrics;
+import com.orctom.laputa.utils.SlidingWindowCounter;
+import com.typesafe.config.Config;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static com.orctom.laputa.service.Constants.*;
+
+/**
+ * Per client request quota, decided before the request gets decoded.
+ * Clients are identified by the configured header or the remote IP.
+ */
+class ClientQuota {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClientQuota.class);
+
+  private static final String GAUGE_REJECTED = "quota.rejected";
+  private static final String GAUGE_TOP = "quota.top";
+
+  private static final String UNKNOWN = "unknown";
+
+  private final long limit;
+  private final String header;
+  private final SlidingWindowCounter counter;
+  private final HeavyHitters offenders;
+
+  private final LongAdder rejected = new LongAdder();
+
+  private ClientQuota(Config config) {
+    limit = config.getLong(CFG_SERVER_QUOTA_LIMIT);
+    header = config.hasPath(CFG_SERVER_QUOTA_HEADER) ? config.getString(CFG_SERVER_QUOTA_HEADER) : null;
+    long windowMillis = config.getDuration(CFG_SERVER_QUOTA_WINDOW, TimeUnit.MILLISECONDS);
+    offenders = new HeavyHitters(config.getInt(CFG_SERVER_QUOTA_TOP));
+    counter = new SlidingWindowCounter(
+        windowMillis,
+        TimeUnit.MILLISECONDS,
+        config.getInt(CFG_SERVER_QUOTA_SKETCH_WIDTH),
+        config.getInt(CFG_SERVER_QUOTA_SKETCH_DEPTH),
+        offenders::clear
+    );
+    LOGGER.info("Client quota: {} requests per {}ms, by: {}", limit, windowMillis, null == header ? "remote IP" : header);
+  }
+
+  /**
+   * @return null if `server.quota` is not enabled
+   */
+  static ClientQuota create(Config config) {
+    if (!config.getBoolean(CFG_SERVER_QUOTA_ENABLED)) {
+      return null;
+    }
+    return new ClientQuota(config);
+  }
+
+  /**
+   * Top offenders of the current window, reading the gauge leaves them in place
+   */
+  void registerGauges(SimpleMetrics metrics) {
+    metrics.gauge(GAUGE_REJECTED, () -> String.valueOf(rejected.sum()));
+    metrics.gauge(GAUGE_TOP, () -> offenders.top().stream()
+        .map(e -> e.getKey() + "=" + e.getValue())
+        .collect(Collectors.joining(", ", "[", "]")));
+  }
+
+  boolean admit(ChannelHandlerContext ctx, HttpRequest req) {
+    String client = getClient(ctx, req);
+    long count = counter.increment(client);
+    if (count <= limit) {
+      return true;
+    }
+
+    rejected.increment();
+    offenders.offer(client, count);
+    return false;
+  }
+
+  private String getClient(ChannelHandlerContext ctx, HttpRequest req) {
+    if (null != header) {
+      String value = req.headers().get(header);
+      if (null != value) {
+        return value;
+      }
+    }
+
+    SocketAddress address = ctx.channel().remoteAddress();
+    if (address instanceof InetSocketAddress) {
+      return ((InetSocketAddress) address).getAddress().getHostAddress();
+    }
+    return null == address ? UNKNOWN : address.toString();
+  }
+}
@@ -0,0 +1,197 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.utils.AdaptiveConcurrencyLimiter;
+import com.orctom.laputa.utils.SimpleMetrics;
+import com.typesafe.config.Config;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.orctom.laputa.service.Constants.*;
+import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
+import static io.netty.handler.codec.http.HttpResponseStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * Keeps the number of requests being processed under an {@link AdaptiveConcurrencyLimiter}.
+ * Requests over the limit wait in a bounded queue till a slot frees up or their deadline passes,
+ * either way they never block the I/O thread.
+ */
+class ConcurrencyGate {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyGate.class);
+
+  private static final String GAUGE_LIMIT = "limiter.limit";
+  private static final String GAUGE_IN_FLIGHT = "limiter.inFlight";
+  private static final String GAUGE_RTT = "limiter.rtt";
+  private static final String GAUGE_RTT_NO_LOAD = "limiter.rtt.noLoad";
+  private static final String GAUGE_QUEUED = "limiter.queued";
+  private static final String GAUGE_DROPPED = "limiter.dropped";
+
+  private final AdaptiveConcurrencyLimiter limiter;
+
+  private final int queueSize;
+  private final long queueTimeoutNanos;
+  private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger();
+
+  private final LongAdder dropped = new LongAdder();
+
+  private ConcurrencyGate(Config config) {
+    limiter = new AdaptiveConcurrencyLimiter(
+        config.getInt(CFG_SERVER_LIMITER_INITIAL),
+        config.getInt(CFG_SERVER_LIMITER_MIN),
+        config.getInt(CFG_SERVER_LIMITER_MAX)
+    );
+    queueSize = config.getInt(CFG_SERVER_LIMITER_QUEUE);
+    queueTimeoutNanos = config.getDuration(CFG_SERVER_LIMITER_QUEUE_TIMEOUT, TimeUnit.NANOSECONDS);
+    LOGGER.info("Adaptive concurrency limit: {}, queue: {}", limiter.getLimit(), queueSize);
+  }
+
+  /**
+   * @return null if `server.limiter` is not enabled
+   */
+  static ConcurrencyGate create(Config config) {
+    if (!config.getBoolean(CFG_SERVER_LIMITER_ENABLED)) {
+      return null;
+    }
+    return new ConcurrencyGate(config);
+  }
+
+  void registerGauges(SimpleMetrics metrics) {
+    metrics.gauge(GAUGE_LIMIT, () -> String.valueOf(limiter.getLimit()));
+    metrics.gauge(GAUGE_IN_FLIGHT, () -> String.valueOf(limiter.getInFlight()));
+    metrics.gauge(GAUGE_RTT, () -> String.valueOf(TimeUnit.NANOSECONDS.toMicros(limiter.getShortRtt())) + "us");
+    metrics.gauge(GAUGE_RTT_NO_LOAD, () -> String.valueOf(TimeUnit.NANOSECONDS.toMicros(limiter.getLongRtt())) + "us");
+    metrics.gauge(GAUGE_QUEUED, () -> String.valueOf(queued.get()));
+    metrics.gauge(GAUGE_DROPPED, () -> String.valueOf(dropped.sum()));
+  }
+
+  /**
+   * Runs `task` right away if there is a free slot, later on the channel's event loop if it got queued,
+   * or not at all with a `503 Service Unavailable` written instead.
+   * The slot has to be given back by {@link #exit(long)} or {@link #exit()} once `task` ran.
+   */
+  void enter(ChannelHandlerContext ctx, FullHttpRequest req, Runnable task) {
+    if (limiter.tryAcquire()) {
+      task.run();
+      return;
+    }
+
+    if (queued.incrementAndGet() > queueSize) {
+      queued.decrementAndGet();
+      drop(ctx, req);
+      return;
+    }
+
+    req.retain();
+    Pending pending = new Pending(ctx, req, task);
+    pending.expiry = ctx.executor().schedule(() -> expire(pending), queueTimeoutNanos, TimeUnit.NANOSECONDS);
+    queue.offer(pending);
+
+    // a slot might have been given back while queueing
+    drain();
+  }
+
+  /**
+   * @param rttNanos time taken since the slot was taken
+   */
+  void exit(long rttNanos) {
+    limiter.release(rttNanos);
+    drain();
+  }
+
+  /**
+   * Gives the slot back without a latency sample, the request did not get processed
+   */
+  void exit() {
+    limiter.release();
+    drain();
+  }
+
+  private void drain() {
+    while (!queue.isEmpty() && limiter.tryAcquire()) {
+      Pending pending = queue.poll();
+      if (null == pending || !pending.claim()) {
+        limiter.release();
+        continue;
+      }
+
+      queued.decrementAndGet();
+      pending.expiry.cancel(false);
+      pending.run();
+    }
+  }
+
+  private void expire(Pending pending) {
+    if (!pending.claim()) {
+      return;
+    }
+
+    queue.remove(pending);
+    queued.decrementAndGet();
+    try {
+      drop(pending.ctx, pending.req);
+      pending.ctx.flush();
+    } finally {
+      pending.req.release();
+    }
+  }
+
+  private void drop(ChannelHandlerContext ctx, FullHttpRequest req) {
+    dropped.increment();
+    RejectedResponses.reject(ctx, req, SERVICE_UNAVAILABLE);
+  }
+
+  private static class Pending {
+
+    private final ChannelHandlerContext ctx;
+    private final FullHttpRequest req;
+    private final Runnable task;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    /**
+     * Not to keep the request around in the scheduled tasks till the deadline once admitted
+     */
+    private volatile ScheduledFuture<?> expiry;
+
+    Pending(ChannelHandlerContext ctx, FullHttpRequest req, Runnable task) {
+      this.ctx = ctx;
+      this.req = req;
+      this.task = task;
+    }
+
+    /**
+     * Either the drain or the deadline gets it, never both
+     */
+    boolean claim() {
+      return claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * Outside of `channelRead` by now, so flushing explicitly,
+     * and answering for the task failing, nothing upstream would
+     */
+    void run() {
+      ctx.executor().execute(() -> {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          LOGGER.error(e.getMessage(), e);
+          RejectedResponses.reject(ctx, req, INTERNAL_SERVER_ERROR);
+        } finally {
+          ctx.flush();
+          req.release();
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.orctom.laputa.service.internal;
+
+import com.typesafe.config.Config;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.orctom.laputa.service.Constants.CFG_SERVER_CONNECTIONS_MAX;
+import static com.orctom.laputa.service.Constants.CFG_SERVER_CONNECTIONS_PER_IP;
+
+/**
+ * Caps the open connections, in total and per remote IP, shared by all the listeners.
+ * Sits in the listeners' pipelines, connections over the limits are closed as they get accepted,
+ * before anything got set up for them.
+ */
+@ChannelHandler.Sharable
+class ConnectionLimiter extends ChannelInboundHandlerAdapter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionLimiter.class);
+
+  private final int max;
+  private final int perIp;
+
+  private final AtomicInteger open = new AtomicInteger();
+  private final Map<InetAddress, Integer> openPerIp = new ConcurrentHashMap<>();
+
+  private ConnectionLimiter(int max, int perIp) {
+    this.max = max;
+    this.perIp = perIp;
+    LOGGER.info("Max connections: {}, per IP: {}", max, perIp);
+  }
+
+  /**
+   * @return null if neither `server.connections.max` nor `server.connections.perIp` is set
+   */
+  static ConnectionLimiter create(Config config) {
+    int max = config.getInt(CFG_SERVER_CONNECTIONS_MAX);
+    int perIp = config.getInt(CFG_SERVER_CONNECTIONS_PER_IP);
+    if (max <= 0 && perIp <= 0) {
+      return null;
+    }
+    return new ConnectionLimiter(max, perIp);
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) {
+    Channel child = (Channel) msg;
+    if (!tryAcquire(child)) {
+      child.unsafe().closeForcibly();
+      return;
+    }
+
+    ctx.fireChannelRead(msg);
+  }
+
+  private boolean tryAcquire(Channel child) {
+    if (max > 0 && open.incrementAndGet() > max) {
+      open.decrementAndGet();
+      LOGGER.debug("Too many connections, rejecting: {}", child.remoteAddress());
+      return false;
+    }
+
+    InetAddress address = getAddress(child);
+    if (perIp > 0 && null != address) {
+      if (openPerIp.merge(address, 1, Integer::sum) > perIp) {
+        release(address);
+        if (max > 0) {
+          open.decrementAndGet();
+        }
+        LOGGER.debug("Too many connections from {}, rejecting.", address);
+        return false;
+      }
+    }
+
+    child.closeFuture().addListener(future -> {
+      if (max > 0) {
+        open.decrementAndGet();
+      }
+      if (perIp > 0 && null != address) {
+        release(address);
+      }
+    });
+    return true;
+  }
+
+  private void release(InetAddress address) {
+    openPerIp.computeIfPresent(address, (key, count) -> 1 == count ? null : count - 1);
+  }
+
+  /**
+   * @return null for the ones not over IP, e.g. domain sockets
+   */
+  private InetAddress getAddress(Channel child) {
+    SocketAddress address = child.remoteAddress();
+    if (address instanceof InetSocketAddress) {
+      return ((InetSocketAddress) address).getAddress();
+    }
+    return null;
+  }
+}
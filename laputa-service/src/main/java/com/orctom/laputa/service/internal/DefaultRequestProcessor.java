@@ -20,8 +20,10 @@ import com.orctom.laputa.service.model.RequestMapping;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.Response;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.model.RouteMatch;
 import com.orctom.laputa.service.model.ValidationError;
 import com.orctom.laputa.service.processor.RequestProcessor;
+import com.orctom.laputa.service.util.ArgsBinder;
 import com.orctom.laputa.service.util.ArgsResolver;
 import com.orctom.laputa.service.util.ParamResolver;
 import com.orctom.laputa.utils.ClassUtils;
@@ -114,47 +116,65 @@ public class DefaultRequestProcessor implements RequestProcessor {
   }
 
   void service(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
-    RequestMapping mapping = getRequestMapping(requestWrapper, responseWrapper);
+    RouteMatch match = getRouteMatch(requestWrapper, responseWrapper);
+    RequestMapping mapping = match.getMapping();
+
+    if (!mapping.tryAcquire()) {
+      responseWrapper.setStatus(TOO_MANY_REQUESTS);
+      responseWrapper.setResult(
+          new Response(TOO_MANY_REQUESTS.code(), Lists.newArrayList(TOO_MANY_REQUESTS.reasonPhrase()))
+      );
+      return;
+    }
 
     Object result;
     try {
-      result = processRequest(requestWrapper, responseWrapper, mapping);
+      result = processRequest(requestWrapper, responseWrapper, match);
+
+    } catch (Exception e) {
+      result = handleException(e, responseWrapper);
+    }
 
-    } catch (ParameterValidationException e) {
-      result = new ValidationError(e.getMessages());
+    responseWrapper.setResult(result);
+  }
+
+  /**
+   * Also used for the failures of the {@link java.util.concurrent.CompletionStage}s returned by controllers.
+   */
+  static Object handleException(Throwable e, ResponseWrapper responseWrapper) {
+    if (e instanceof ParameterValidationException) {
       responseWrapper.setRedirectTo(PATH_403);
       responseWrapper.setData("error", e.getMessage());
+      return new ValidationError(((ParameterValidationException) e).getMessages());
+    }
 
-    } catch (IllegalArgumentException e) {
-      result = new Response(BAD_REQUEST.code(), Lists.newArrayList(BAD_REQUEST.reasonPhrase()));
+    if (e instanceof IllegalArgumentException) {
       responseWrapper.setRedirectTo(PATH_403);
       responseWrapper.setData("error", BAD_REQUEST.reasonPhrase());
       LOGGER.error(e.getMessage(), e);
-
-    } catch (Exception e) {
-      result = new Response(INTERNAL_SERVER_ERROR.code(), Lists.newArrayList(INTERNAL_SERVER_ERROR.reasonPhrase()));
-      responseWrapper.setRedirectTo(PATH_500);
-      responseWrapper.setData("error", INTERNAL_SERVER_ERROR.reasonPhrase());
-      LOGGER.error(e.getMessage(), e);
+      return new Response(BAD_REQUEST.code(), Lists.newArrayList(BAD_REQUEST.reasonPhrase()));
     }
 
-    responseWrapper.setResult(result);
+    responseWrapper.setRedirectTo(PATH_500);
+    responseWrapper.setData("error", INTERNAL_SERVER_ERROR.reasonPhrase());
+    LOGGER.error(e.getMessage(), e);
+    return new Response(INTERNAL_SERVER_ERROR.code(), Lists.newArrayList(INTERNAL_SERVER_ERROR.reasonPhrase()));
   }
 
-  private RequestMapping getRequestMapping(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
+  private RouteMatch getRouteMatch(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
     MappingConfig mappingConfig = MappingConfig.getInstance();
-    RequestMapping mapping = mappingConfig.getMapping(
+    RouteMatch match = mappingConfig.match(
         requestWrapper.getPath(),
         getHttpMethod(requestWrapper.getHttpMethod())
     );
 
-    if (null == mapping) {
-      mapping = mappingConfig._404();
+    if (null == match) {
+      match = new RouteMatch(mappingConfig._404());
       responseWrapper.setStatus(NOT_FOUND);
     }
 
-    setTemplateName(responseWrapper, mapping);
-    return mapping;
+    setTemplateName(responseWrapper, match.getMapping());
+    return match;
   }
 
   private void setTemplateName(ResponseWrapper responseWrapper, RequestMapping mapping) {
@@ -197,8 +217,9 @@ public class DefaultRequestProcessor implements RequestProcessor {
     return template;
   }
 
-  private Object processRequest(RequestWrapper requestWrapper, ResponseWrapper responseWrapper, RequestMapping mapping)
+  private Object processRequest(RequestWrapper requestWrapper, ResponseWrapper responseWrapper, RouteMatch match)
       throws InvocationTargetException, IllegalAccessException {
+    RequestMapping mapping = match.getMapping();
     FastMethod handlerMethod = mapping.getHandlerMethod();
     Object target = mapping.getTarget();
 
@@ -219,9 +240,7 @@ public class DefaultRequestProcessor implements RequestProcessor {
       return handlerMethod.invoke(target, null);
     }
 
-    Map<String, String> params = ParamResolver.extractParams(mapping, requestWrapper);
-
-    Object[] args = ArgsResolver.resolveArgs(params, parameters, requestWrapper, responseWrapper.getMessenger());
+    Object[] args = resolveArgs(requestWrapper, responseWrapper, match);
 
     validate(target, handlerMethod.getJavaMethod(), args);
 
@@ -238,7 +257,23 @@ public class DefaultRequestProcessor implements RequestProcessor {
     }
   }
 
-  private HTTPMethod getHttpMethod(HttpMethod method) {
+  private Object[] resolveArgs(RequestWrapper requestWrapper, ResponseWrapper responseWrapper, RouteMatch match) {
+    RequestMapping mapping = match.getMapping();
+    ArgsBinder argsBinder = mapping.getArgsBinder();
+    if (null != argsBinder) {
+      return argsBinder.bind(requestWrapper, match.getPathParams(), responseWrapper.getMessenger());
+    }
+
+    Map<String, String> params = ParamResolver.extractParams(mapping, requestWrapper, match.getPathParams());
+    return ArgsResolver.resolveArgs(
+        params,
+        mapping.getHandlerParameters(),
+        requestWrapper,
+        responseWrapper.getMessenger()
+    );
+  }
+
+  static HTTPMethod getHttpMethod(HttpMethod method) {
     HTTPMethod httpMethod = HTTP_METHODS.get(method);
     if (null != httpMethod) {
       return httpMethod;
@@ -0,0 +1,44 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.exception.IllegalConfigException;
+
+/**
+ * Where the filter chain and the controllers get executed
+ */
+enum DispatchMode {
+
+  /**
+   * On the netty I/O thread that decoded the request
+   */
+  EVENT_LOOP("event-loop"),
+
+  /**
+   * On a bounded worker pool, responses are written back on the channel's event loop
+   */
+  EXECUTOR("executor"),
+
+  /**
+   * On a fresh virtual thread per request (Java 21+), falls back to {@link #EXECUTOR} on older runtimes
+   */
+  VIRTUAL("virtual");
+
+  private String key;
+
+  DispatchMode(String key) {
+    this.key = key;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  static DispatchMode of(String key) {
+    for (DispatchMode mode : values()) {
+      if (mode.key.equalsIgnoreCase(key)) {
+        return mode;
+      }
+    }
+
+    throw new IllegalConfigException("Unknown dispatch mode: " + key);
+  }
+}
@@ -0,0 +1,89 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes the event loops periodically for how late a scheduled task runs (lag) and how many tasks are waiting.
+ * Keeps the worst of all loops watched.
+ */
+class EventLoopMonitor {
+
+  private final long intervalNanos;
+  private final List<Probe> probes = new CopyOnWriteArrayList<>();
+
+  private volatile long lagNanos;
+  private volatile int pendingTasks;
+
+  EventLoopMonitor(long intervalNanos) {
+    this.intervalNanos = intervalNanos;
+  }
+
+  void watch(EventLoopGroup group) {
+    for (EventExecutor executor : group) {
+      Probe probe = new Probe(executor);
+      probes.add(probe);
+      probe.schedule();
+    }
+  }
+
+  long getLagNanos() {
+    return lagNanos;
+  }
+
+  int getPendingTasks() {
+    return pendingTasks;
+  }
+
+  /**
+   * A loop stuck on something never gets to run its probe, so its overdue probe counts as lag
+   */
+  private void refresh() {
+    long now = System.nanoTime();
+    long maxLag = 0;
+    int maxPending = 0;
+    for (Probe probe : probes) {
+      maxLag = Math.max(maxLag, Math.max(probe.lag, now - probe.expected));
+      maxPending = Math.max(maxPending, probe.pending);
+    }
+    lagNanos = maxLag;
+    pendingTasks = maxPending;
+  }
+
+  private class Probe implements Runnable {
+
+    private final EventExecutor executor;
+
+    private volatile long expected = Long.MAX_VALUE;
+    private volatile long lag;
+    private volatile int pending;
+
+    Probe(EventExecutor executor) {
+      this.executor = executor;
+    }
+
+    void schedule() {
+      if (executor.isShuttingDown()) {
+        probes.remove(this);
+        return;
+      }
+      expected = System.nanoTime() + intervalNanos;
+      executor.schedule(this, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void run() {
+      lag = Math.max(0, System.nanoTime() - expected);
+      if (executor instanceof SingleThreadEventExecutor) {
+        pending = ((SingleThreadEventExecutor) executor).pendingTasks();
+      }
+      refresh();
+      schedule();
+    }
+  }
+}
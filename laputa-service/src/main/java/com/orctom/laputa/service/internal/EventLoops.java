@@ -0,0 +1,127 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.config.Configurator;
+import com.typesafe.config.Config;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.orctom.laputa.service.Constants.*;
+
+/**
+ * The boss/worker event loop groups shared by all the listeners (http, https),
+ * shut down once the last listener using them is closed, or by the {@link GracefulShutdown}.
+ */
+public class EventLoops {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EventLoops.class);
+
+  private final Transport transport;
+  private final ChannelOption<Boolean> reusePortOption;
+
+  private final EventLoopGroup bossGroup;
+  private final EventLoopGroup workerGroup;
+
+  private final AtomicInteger listeners;
+
+  private final ChannelGroup connections = new DefaultChannelGroup("connections", GlobalEventExecutor.INSTANCE);
+
+  private volatile boolean closing;
+
+  /**
+   * @param listeners number of listeners sharing them
+   */
+  public EventLoops(int listeners) {
+    Config config = Configurator.getInstance().getConfig();
+    this.listeners = new AtomicInteger(listeners);
+    this.transport = getTransport(config);
+
+    ChannelOption<Boolean> option = transport.getReusePortOption();
+    this.reusePortOption = config.getBoolean(CFG_SERVER_REUSE_PORT) ? option : null;
+
+    workerGroup = transport.newEventLoopGroup(config.getInt(CFG_SERVER_EVENT_LOOPS_WORKERS));
+    // accepting on the worker event loops, one listener each
+    bossGroup = null != reusePortOption ?
+        workerGroup : transport.newEventLoopGroup(config.getInt(CFG_SERVER_EVENT_LOOPS_BOSS));
+
+    int ioRatio = config.getInt(CFG_SERVER_EVENT_LOOPS_IO_RATIO);
+    transport.setIoRatio(workerGroup, ioRatio);
+    transport.setIoRatio(bossGroup, ioRatio);
+
+    LOGGER.info("Transport: {}, workers: {}, ioRatio: {}", transport.getKey(), getWorkerCount(), ioRatio);
+  }
+
+  /**
+   * `server.transport`, or the legacy `server.epoll` flag if not set
+   */
+  private Transport getTransport(Config config) {
+    if (config.hasPath(CFG_SERVER_TRANSPORT)) {
+      return Transport.of(config.getString(CFG_SERVER_TRANSPORT));
+    }
+
+    boolean useNativeEpoll = config.hasPath(CFG_SERVER_USE_EPOLL) && config.getBoolean(CFG_SERVER_USE_EPOLL);
+    return useNativeEpoll ? Transport.of(Transport.EPOLL.getKey()) : Transport.NIO;
+  }
+
+  EventLoopGroup getBossGroup() {
+    return bossGroup;
+  }
+
+  EventLoopGroup getWorkerGroup() {
+    return workerGroup;
+  }
+
+  int getWorkerCount() {
+    return ((MultithreadEventLoopGroup) workerGroup).executorCount();
+  }
+
+  boolean isEpoll() {
+    return Transport.EPOLL == transport;
+  }
+
+  Class<? extends ServerSocketChannel> getServerChannelClass() {
+    return transport.getServerChannelClass();
+  }
+
+  /**
+   * @return null unless binding one listener per worker event loop with SO_REUSEPORT
+   */
+  ChannelOption<Boolean> getReusePortOption() {
+    return reusePortOption;
+  }
+
+  /**
+   * The accepted connections, closed ones drop out by themselves
+   */
+  ChannelGroup getConnections() {
+    return connections;
+  }
+
+  /**
+   * Called by each listener once closed, the event loops are left to the {@link GracefulShutdown} if it is running
+   */
+  void release() {
+    if (0 == listeners.decrementAndGet() && !closing) {
+      shutdown();
+    }
+  }
+
+  void markClosing() {
+    closing = true;
+  }
+
+  Future<?> shutdown() {
+    LOGGER.warn("shutting down event loops...");
+    bossGroup.shutdownGracefully();
+    return workerGroup.shutdownGracefully();
+  }
+}
@@ -0,0 +1,73 @@
+package com.orctom.laputa.service.internal;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.exception.FileUploadException;
+import com.orctom.laputa.service.exception.RequestProcessingException;
+import io.netty.handler.codec.http.multipart.Attribute;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import io.netty.handler.codec.http.multipart.HttpDataFactory;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData.HttpDataType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+
+/**
+ * Turns decoded post data into request parameters, file uploads are referred by their paths
+ */
+final class FormParameters {
+
+  static final HttpDataFactory HTTP_DATA_FACTORY = new DefaultHttpDataFactory(
+      Configurator.getInstance().getPostDataUseDiskThreshold(),
+      Configurator.getInstance().getCharset()
+  );
+
+  private static final String FILE = ".file";
+  private static final String FILENAME = ".originalFilename";
+
+  private FormParameters() {
+  }
+
+  static void add(Map<String, List<String>> parameters, InterfaceHttpData data) {
+    if (HttpDataType.Attribute == data.getHttpDataType()) {
+      add(parameters, (Attribute) data);
+
+    } else if (HttpDataType.FileUpload == data.getHttpDataType()) {
+      add(parameters, (FileUpload) data);
+    }
+  }
+
+  private static void add(Map<String, List<String>> parameters, Attribute attribute) {
+    try {
+      String value = attribute.getValue();
+      if (Strings.isNullOrEmpty(value)) {
+        return;
+      }
+
+      String name = attribute.getName();
+      List<String> params = parameters.computeIfAbsent(name, k -> new ArrayList<>());
+      params.add(value);
+    } catch (IOException e) {
+      throw new RequestProcessingException(e.getMessage(), e);
+    }
+  }
+
+  private static void add(Map<String, List<String>> parameters, FileUpload fileUpload) {
+    try {
+      File uploadedFile = fileUpload.getFile();
+      parameters.put(fileUpload.getName() + FILE, Lists.newArrayList(uploadedFile.getAbsolutePath()));
+      parameters.put(fileUpload.getName() + FILENAME, Lists.newArrayList(fileUpload.getFilename()));
+      parameters.put(fileUpload.getName() + CONTENT_TYPE, Lists.newArrayList(fileUpload.getContentType()));
+    } catch (IOException e) {
+      throw new FileUploadException("Failed to upload file: " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.config.Configurator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2Error;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.orctom.laputa.service.Constants.CFG_SERVER_SHUTDOWN_TIMEOUT;
+
+/**
+ * Stops accepting, lets the requests in flight finish (up to `server.shutdown.timeout`)
+ * with their connections closed after the responses, then releases the event loops.
+ * A request is in flight from its head being read till its response is written out, so the ones queued,
+ * being uploaded or held back for pipelining are waited for as well, and so are the streamed responses.
+ * HTTP/2 connections get a GOAWAY up front, finishing the streams they have but not opening new ones.
+ */
+public class GracefulShutdown implements Runnable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(GracefulShutdown.class);
+
+  private static final long POLL_INTERVAL_MILLIS = 50;
+  private static final long QUIET_PERIOD_SECONDS = 5;
+
+  private final List<Bootstrapper> bootstrappers;
+  private final EventLoops eventLoops;
+  private final long timeoutNanos;
+
+  public GracefulShutdown(List<Bootstrapper> bootstrappers, EventLoops eventLoops) {
+    this.bootstrappers = bootstrappers;
+    this.eventLoops = eventLoops;
+    this.timeoutNanos = Configurator.getInstance().getConfig()
+        .getDuration(CFG_SERVER_SHUTDOWN_TIMEOUT, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void run() {
+    LOGGER.warn("Shutting down gracefully...");
+    eventLoops.markClosing();
+    for (Bootstrapper bootstrapper : bootstrappers) {
+      bootstrapper.closeListeners();
+    }
+
+    LaputaRequestProcessor requestProcessor = Bootstrapper.getRequestProcessor();
+    requestProcessor.drain();
+    goAway();
+    awaitInFlight(requestProcessor);
+
+    closeConnections();
+    requestProcessor.shutdown();
+    eventLoops.shutdown().awaitUninterruptibly(QUIET_PERIOD_SECONDS * 3, TimeUnit.SECONDS);
+    LOGGER.warn("Shut down.");
+  }
+
+  /**
+   * Graceful GOAWAY (`NO_ERROR`, the last stream opened by the client), on the event loop of each connection
+   */
+  private void goAway() {
+    for (Channel channel : eventLoops.getConnections()) {
+      channel.eventLoop().execute(() -> {
+        Http2ConnectionHandler handler = channel.pipeline().get(Http2ConnectionHandler.class);
+        if (null == handler) {
+          return;
+        }
+
+        ChannelHandlerContext ctx = channel.pipeline().context(handler);
+        int lastStreamId = handler.connection().remote().lastStreamCreated();
+        handler.goAway(ctx, lastStreamId, Http2Error.NO_ERROR.code(), Unpooled.EMPTY_BUFFER, ctx.newPromise());
+        ctx.flush();
+      });
+    }
+  }
+
+  /**
+   * Keep-alive connections in between requests, and HTTP/2 ones done with their streams,
+   * once whatever is still in their outbound buffers (e.g. a GOAWAY, the tail of a response) is written out.
+   * An empty buffer written at the head of the pipeline is queued behind all of it.
+   */
+  private void closeConnections() {
+    List<ChannelFuture> drained = new ArrayList<>();
+    for (Channel channel : eventLoops.getConnections()) {
+      ChannelHandlerContext ctx = channel.pipeline().firstContext();
+      if (null != ctx) {
+        drained.add(ctx.writeAndFlush(Unpooled.EMPTY_BUFFER));
+      }
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(QUIET_PERIOD_SECONDS);
+    for (ChannelFuture future : drained) {
+      future.awaitUninterruptibly(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+    eventLoops.getConnections().close().awaitUninterruptibly(QUIET_PERIOD_SECONDS, TimeUnit.SECONDS);
+  }
+
+  private void awaitInFlight(LaputaRequestProcessor requestProcessor) {
+    long deadline = System.nanoTime() + timeoutNanos;
+    try {
+      while (requestProcessor.getInFlight() > 0 && System.nanoTime() < deadline) {
+        TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL_MILLIS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    int inFlight = requestProcessor.getInFlight();
+    if (inFlight > 0) {
+      LOGGER.warn("Timed out waiting for {} requests in flight.", inFlight);
+    }
+  }
+}
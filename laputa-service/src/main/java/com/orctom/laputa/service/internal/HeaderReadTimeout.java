@@ -0,0 +1,134 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.handler.codec.http.HttpHeaderNames.CONNECTION;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
+import static io.netty.handler.codec.http.HttpHeaderValues.CLOSE;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_TIMEOUT;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * Slowloris: the headers of a request have to be complete within the timeout from its first byte,
+ * or the connection gets a `408 Request Timeout` and is closed.
+ * Goes after the http codec, with its {@link #firstBytes()} in front of the protocol detection,
+ * so a connection stalling before it is even known to be HTTP/1 (e.g. half of the HTTP/2 preface) is closed too.
+ */
+class HeaderReadTimeout extends ChannelInboundHandlerAdapter {
+
+  private final long timeoutNanos;
+
+  private ChannelHandlerContext ctx;
+  private ScheduledFuture<?> timeout;
+
+  /**
+   * Between the headers of a request and its last content, the bytes coming in are the body
+   */
+  private boolean inRequest;
+
+  HeaderReadTimeout(long timeoutNanos) {
+    this.timeoutNanos = timeoutNanos;
+  }
+
+  /**
+   * Starts the clock on the first bytes of a request
+   */
+  ChannelHandler firstBytes() {
+    return new FirstBytes();
+  }
+
+  /**
+   * @return the one whose {@link #firstBytes()} is in the pipeline, null if none
+   */
+  static HeaderReadTimeout get(ChannelPipeline p) {
+    FirstBytes firstBytes = p.get(FirstBytes.class);
+    return null == firstBytes ? null : firstBytes.getTimeout();
+  }
+
+  /**
+   * The protocol detected is not HTTP/1, it times out the connection on its own
+   */
+  void detach(ChannelPipeline p) {
+    cancel();
+    p.remove(FirstBytes.class);
+  }
+
+  @Override
+  public void handlerAdded(ChannelHandlerContext ctx) {
+    this.ctx = ctx;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) {
+    if (msg instanceof HttpRequest) {
+      cancel();
+      inRequest = true;
+    }
+    if (msg instanceof LastHttpContent) {
+      inRequest = false;
+    }
+    ctx.fireChannelRead(msg);
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    cancel();
+    super.channelInactive(ctx);
+  }
+
+  private void cancel() {
+    if (null != timeout) {
+      timeout.cancel(false);
+      timeout = null;
+    }
+  }
+
+  private void expire(ChannelHandlerContext firstBytesCtx) {
+    timeout = null;
+    if (!firstBytesCtx.channel().isActive()) {
+      return;
+    }
+    if (null == ctx) {
+      firstBytesCtx.close();
+      return;
+    }
+
+    FullHttpResponse res = new DefaultFullHttpResponse(HTTP_1_1, REQUEST_TIMEOUT);
+    res.headers().set(CONNECTION, CLOSE);
+    res.headers().setInt(CONTENT_LENGTH, 0);
+    ctx.writeAndFlush(res).addListener(ChannelFutureListener.CLOSE);
+  }
+
+  private class FirstBytes extends ChannelInboundHandlerAdapter {
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+      if (msg instanceof ByteBuf && !inRequest && null == timeout) {
+        timeout = ctx.executor().schedule(() -> expire(ctx), timeoutNanos, TimeUnit.NANOSECONDS);
+      }
+      ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      cancel();
+      super.channelInactive(ctx);
+    }
+
+    private HeaderReadTimeout getTimeout() {
+      return HeaderReadTimeout.this;
+    }
+  }
+}
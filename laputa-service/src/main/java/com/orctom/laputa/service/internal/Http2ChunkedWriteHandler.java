@@ -0,0 +1,219 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.stream.ChunkedInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the chunked responses of HTTP/2 streams as DATA frames of their own stream,
+ * each one pulled only while the flow control window of its stream (and the connection) lets it through.
+ * Streams are written side by side, a slow client window or a large body holds back nothing but its own stream,
+ * unlike a single {@link io.netty.handler.stream.ChunkedWriteHandler} queueing up everything behind it.
+ * The {@link ChunkedInput} follows the response header naming the stream, they are written in one go.
+ */
+class Http2ChunkedWriteHandler extends ChannelDuplexHandler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Http2ChunkedWriteHandler.class);
+
+  private static final CharSequence STREAM_ID = HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text();
+
+  private final Http2ConnectionHandler http2Handler;
+
+  private final Map<Integer, StreamWrite> streams = new HashMap<>();
+
+  private ChannelHandlerContext http2Ctx;
+
+  /**
+   * The stream of the response header written last, the one the chunked input following it belongs to
+   */
+  private int currentStreamId;
+
+  private boolean resumeScheduled;
+
+  Http2ChunkedWriteHandler(Http2ConnectionHandler http2Handler) {
+    this.http2Handler = http2Handler;
+  }
+
+  @Override
+  public void handlerAdded(ChannelHandlerContext ctx) {
+    http2Ctx = ctx.pipeline().context(http2Handler);
+    http2Handler.encoder().flowController().listener(stream -> {
+      if (streams.containsKey(stream.id())) {
+        scheduleResume(ctx);
+      }
+    });
+    http2Handler.connection().addListener(new Http2ConnectionAdapter() {
+      @Override
+      public void onStreamClosed(Http2Stream stream) {
+        StreamWrite write = streams.remove(stream.id());
+        if (null != write) {
+          write.abort(Http2Exception.streamError(
+              stream.id(), Http2Error.STREAM_CLOSED, "Stream closed before its response was written"
+          ));
+        }
+      }
+    });
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+    if (msg instanceof HttpMessage) {
+      currentStreamId = ((HttpMessage) msg).headers().getInt(STREAM_ID, 0);
+
+    } else if (msg instanceof ChunkedInput && currentStreamId > 0) {
+      streams.put(currentStreamId, new StreamWrite(currentStreamId, (ChunkedInput<?>) msg, promise));
+      return;
+    }
+
+    ctx.write(msg, promise);
+  }
+
+  @Override
+  public void flush(ChannelHandlerContext ctx) {
+    writeChunks();
+    ctx.flush();
+  }
+
+  /**
+   * Called back by the flow controller while it is writing, the chunks are pulled after it is done
+   */
+  private void scheduleResume(ChannelHandlerContext ctx) {
+    if (resumeScheduled) {
+      return;
+    }
+    resumeScheduled = true;
+    ctx.executor().execute(() -> {
+      resumeScheduled = false;
+      flush(ctx);
+    });
+  }
+
+  private void writeChunks() {
+    if (streams.isEmpty()) {
+      return;
+    }
+    for (StreamWrite write : new ArrayList<>(streams.values())) {
+      writeChunks(write);
+    }
+  }
+
+  private void writeChunks(StreamWrite write) {
+    Http2Stream stream = http2Handler.connection().stream(write.streamId);
+    if (null == stream) {
+      streams.remove(write.streamId);
+      write.abort(new ClosedChannelException());
+      return;
+    }
+
+    while (http2Handler.encoder().flowController().isWritable(stream)) {
+      ByteBuf data;
+      boolean last;
+      try {
+        Object chunk = write.input.readChunk(http2Ctx.alloc());
+        last = write.input.isEndOfInput();
+        if (null == chunk) {
+          if (!last) {
+            // nothing to read for now, tried again on the next flush
+            return;
+          }
+          data = Unpooled.EMPTY_BUFFER;
+        } else {
+          data = chunk instanceof HttpContent ? ((HttpContent) chunk).content() : (ByteBuf) chunk;
+        }
+      } catch (Exception e) {
+        LOGGER.error("Failed to read the response of stream: {}", write.streamId, e);
+        streams.remove(write.streamId);
+        http2Handler.resetStream(http2Ctx, write.streamId, Http2Error.INTERNAL_ERROR.code(), http2Ctx.newPromise());
+        write.abort(e);
+        return;
+      }
+
+      if (last) {
+        streams.remove(write.streamId);
+        write.closeInput();
+        http2Handler.encoder().writeData(http2Ctx, write.streamId, data, 0, true, write.promise);
+        return;
+      }
+      http2Handler.encoder().writeData(http2Ctx, write.streamId, data, 0, false, http2Ctx.newPromise())
+          .addListener(write);
+    }
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) {
+    discardStreams();
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    discardStreams();
+    super.channelInactive(ctx);
+  }
+
+  private void discardStreams() {
+    if (streams.isEmpty()) {
+      return;
+    }
+    ClosedChannelException cause = new ClosedChannelException();
+    for (StreamWrite write : streams.values()) {
+      write.abort(cause);
+    }
+    streams.clear();
+  }
+
+  private class StreamWrite implements ChannelFutureListener {
+
+    private final int streamId;
+    private final ChunkedInput<?> input;
+    private final ChannelPromise promise;
+
+    StreamWrite(int streamId, ChunkedInput<?> input, ChannelPromise promise) {
+      this.streamId = streamId;
+      this.input = input;
+      this.promise = promise;
+    }
+
+    /**
+     * A DATA frame failed to go out, the encoder takes care of the stream itself
+     */
+    @Override
+    public void operationComplete(ChannelFuture future) {
+      if (!future.isSuccess() && streams.remove(streamId, this)) {
+        abort(future.cause());
+      }
+    }
+
+    void abort(Throwable cause) {
+      closeInput();
+      promise.tryFailure(cause);
+    }
+
+    void closeInput() {
+      try {
+        input.close();
+      } catch (Exception e) {
+        LOGGER.warn(e.getMessage(), e);
+      }
+    }
+  }
+}
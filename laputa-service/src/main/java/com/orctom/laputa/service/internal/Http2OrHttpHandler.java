@@ -0,0 +1,33 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+
+/**
+ * Sets up the pipeline for the protocol picked by ALPN during the TLS handshake, HTTP/1.1 if none got picked.
+ */
+class Http2OrHttpHandler extends ApplicationProtocolNegotiationHandler {
+
+  private final LaputaServerInitializer initializer;
+
+  Http2OrHttpHandler(LaputaServerInitializer initializer) {
+    super(ApplicationProtocolNames.HTTP_1_1);
+    this.initializer = initializer;
+  }
+
+  @Override
+  protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+    if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+      initializer.configureHttp2(ctx.pipeline());
+      return;
+    }
+
+    if (ApplicationProtocolNames.HTTP_1_1.equals(protocol)) {
+      initializer.configureHttp1(ctx.pipeline());
+      return;
+    }
+
+    throw new IllegalStateException("Unknown protocol: " + protocol);
+  }
+}
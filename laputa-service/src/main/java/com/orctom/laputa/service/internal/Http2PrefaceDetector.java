@@ -0,0 +1,42 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+
+import java.util.List;
+
+/**
+ * Prior knowledge h2c on the plain port: clients starting with the HTTP/2 connection preface get HTTP/2,
+ * the rest HTTP/1.1. Decided on the first bytes, then it takes itself out of the pipeline,
+ * handing whatever it has read over to the handlers set up in its place.
+ */
+class Http2PrefaceDetector extends ByteToMessageDecoder {
+
+  private static final ByteBuf PREFACE = Http2CodecUtil.connectionPrefaceBuf();
+
+  private final LaputaServerInitializer initializer;
+
+  Http2PrefaceDetector(LaputaServerInitializer initializer) {
+    this.initializer = initializer;
+  }
+
+  @Override
+  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+    int prefaceLength = PREFACE.readableBytes();
+    int length = Math.min(in.readableBytes(), prefaceLength);
+    if (!ByteBufUtil.equals(PREFACE, PREFACE.readerIndex(), in, in.readerIndex(), length)) {
+      initializer.configureHttp1(ctx.pipeline());
+
+    } else if (length == prefaceLength) {
+      initializer.configureHttp2(ctx.pipeline());
+
+    } else {
+      return;
+    }
+
+    ctx.pipeline().remove(this);
+  }
+}
@@ -0,0 +1,80 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.timeout.IdleStateEvent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closes the keep-alive connections the {@link io.netty.handler.timeout.IdleStateHandler} found idle,
+ * unless they are waiting for a response (e.g. a slow controller), which is no reason to cut them off.
+ * Sits right after the http codec, counting the requests in and the responses out.
+ * The requests of all the connections are counted in `inFlight` as well, from their heads being read
+ * till the last of their responses got written out (not just handed over), for the graceful shutdown to wait on.
+ */
+class IdleConnectionReaper extends ChannelDuplexHandler {
+
+  private final AtomicInteger inFlight;
+
+  private int pending;
+
+  IdleConnectionReaper(AtomicInteger inFlight) {
+    this.inFlight = inFlight;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) {
+    if (msg instanceof HttpRequest) {
+      pending++;
+      inFlight.incrementAndGet();
+    }
+    ctx.fireChannelRead(msg);
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+    if (isLast(msg) && !isInformational(msg) && pending > 0) {
+      pending--;
+      ChannelPromise written = promise.unvoid();
+      written.addListener(future -> inFlight.decrementAndGet());
+      ctx.write(msg, written);
+      return;
+    }
+    ctx.write(msg, promise);
+  }
+
+  private boolean isLast(Object msg) {
+    return msg instanceof LastHttpContent || msg instanceof ChunkedInput;
+  }
+
+  /**
+   * `100 Continue` is followed by the actual response
+   */
+  private boolean isInformational(Object msg) {
+    return msg instanceof HttpResponse && HttpStatusClass.INFORMATIONAL == ((HttpResponse) msg).status().codeClass();
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    // never to be answered
+    inFlight.addAndGet(-pending);
+    pending = 0;
+    super.channelInactive(ctx);
+  }
+
+  @Override
+  public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+    if (evt instanceof IdleStateEvent && 0 == pending) {
+      ctx.close();
+      return;
+    }
+    super.userEventTriggered(ctx, evt);
+  }
+}
@@ -1,37 +1,36 @@
 package com.orctom.laputa.service.internal;
 
-import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.RateLimiter;
 import com.orctom.laputa.service.config.Configurator;
-import com.orctom.laputa.service.exception.FileUploadException;
+import com.orctom.laputa.service.config.MappingConfig;
 import com.orctom.laputa.service.exception.RequestProcessingException;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
 import com.orctom.laputa.service.processor.RequestProcessor;
 import com.orctom.laputa.service.translator.content.ContentTranslator;
 import com.orctom.laputa.service.translator.content.ContentTranslators;
+import com.orctom.laputa.service.translator.content.StreamContentEncoder;
+import com.orctom.laputa.service.translator.content.StreamedContent;
 import com.orctom.laputa.service.translator.content.TemplateContentTranslator;
 import com.orctom.laputa.service.translator.response.ResponseTranslators;
+import com.orctom.laputa.service.util.HttpStreams;
 import com.orctom.laputa.utils.SimpleMeter;
 import com.orctom.laputa.utils.SimpleMetrics;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoopGroup;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.QueryStringDecoder;
-import io.netty.handler.codec.http.multipart.Attribute;
-import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
-import io.netty.handler.codec.http.multipart.FileUpload;
-import io.netty.handler.codec.http.multipart.HttpDataFactory;
 import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
 import io.netty.handler.codec.http.multipart.InterfaceHttpData;
-import io.netty.handler.codec.http.multipart.InterfaceHttpData.HttpDataType;
 import io.netty.util.CharsetUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.activation.MimetypesFileTypeMap;
-import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -40,11 +39,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.orctom.laputa.service.Constants.PATH_500;
 import static com.orctom.laputa.service.model.MediaType.TEXT_PLAIN;
-import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
 import static io.netty.handler.codec.http.HttpResponseStatus.*;
 
 /**
@@ -55,37 +58,60 @@ class LaputaRequestProcessor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(LaputaRequestProcessor.class);
 
+  /**
+   * The content translators without a stream encoder warned about already, once is enough
+   */
+  private static final Set<Class<?>> COLLECTING_TRANSLATORS = ConcurrentHashMap.newKeySet();
+
+  private static SimpleMetrics metrics;
   private static SimpleMeter simpleMeter;
   private static final String METER_REQUESTS = "requests";
-
-  private static final String FILE = ".file";
-  private static final String FILENAME = ".originalFilename";
-
-  private static final HttpDataFactory HTTP_DATA_FACTORY = new DefaultHttpDataFactory(
-      Configurator.getInstance().getPostDataUseDiskThreshold(),
-      Configurator.getInstance().getCharset()
-  );
+  private static final String GAUGE_IN_FLIGHT = "requests.inFlight";
 
   private static final MimetypesFileTypeMap MIMETYPES_FILE_TYPE_MAP = new MimetypesFileTypeMap();
 
   private List<RequestProcessor> requestProcessors = new ArrayList<>();
 
-  private static RateLimiter rateLimiter;
+  private AdmissionController admissionController =
+      new AdmissionController(Configurator.getInstance().getThrottle());
 
-  LaputaRequestProcessor() {
-    if (LOGGER.isInfoEnabled()) {
-      simpleMeter = SimpleMetrics.create(LOGGER).meter(METER_REQUESTS);
-    }
+  private ClientQuota clientQuota = ClientQuota.create(Configurator.getInstance().getConfig());
+
+  private ConcurrencyGate concurrencyGate = ConcurrencyGate.create(Configurator.getInstance().getConfig());
+
+  private RequestDispatcher dispatcher = new RequestDispatcher(Configurator.getInstance().getConfig());
 
-    initRateLimiter();
+  private LoadShedder loadShedder;
 
+  /**
+   * Requests read whose responses are not completely written out yet, counted by {@link IdleConnectionReaper}:
+   * the ones queued, being decoded or held back for pipelining included
+   */
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private volatile boolean draining;
+
+  LaputaRequestProcessor() {
     loadRequestProcessors();
-  }
 
-  private void initRateLimiter() {
-    Integer maxRequestsPerSecond = Configurator.getInstance().getThrottle();
-    if (null != maxRequestsPerSecond) {
-      rateLimiter = RateLimiter.create(maxRequestsPerSecond);
+    loadShedder = LoadShedder.create(Configurator.getInstance().getConfig(), requestProcessors);
+
+    if (LOGGER.isInfoEnabled()) {
+      metrics = SimpleMetrics.create(LOGGER);
+      simpleMeter = metrics.meter(METER_REQUESTS);
+      metrics.gauge(GAUGE_IN_FLIGHT, () -> String.valueOf(inFlight.get()));
+      dispatcher.registerGauges(metrics);
+      admissionController.registerGauges(metrics);
+      MappingConfig.getInstance().registerGauges(metrics);
+      if (null != clientQuota) {
+        clientQuota.registerGauges(metrics);
+      }
+      if (null != concurrencyGate) {
+        concurrencyGate.registerGauges(metrics);
+      }
+      if (null != loadShedder) {
+        loadShedder.registerGauges(metrics);
+      }
     }
   }
 
@@ -95,40 +121,199 @@ class LaputaRequestProcessor {
     requestProcessors.add(new DefaultRequestProcessor());
   }
 
+  /**
+   * Event loops to be probed for shedding load
+   */
+  void watch(EventLoopGroup group) {
+    if (null != loadShedder) {
+      loadShedder.watch(group);
+    }
+  }
+
+  /**
+   * Shutting down: the connections get closed after their current responses,
+   * HTTP/2 ones get a GOAWAY from {@link GracefulShutdown} instead, not to cut off the other streams.
+   */
+  void drain() {
+    draining = true;
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+
+  AtomicInteger getInFlightCounter() {
+    return inFlight;
+  }
+
+  void shutdown() {
+    dispatcher.shutdown();
+  }
+
   void handleRequest(ChannelHandlerContext ctx, FullHttpRequest req) {
     if (LOGGER.isInfoEnabled()) {
       simpleMeter.mark();
     }
 
-    RequestWrapper requestWrapper = getRequestWrapper(req);
+    if (draining && !HttpStreams.isHttp2(req)) {
+      HttpUtil.setKeepAlive(req, false);
+    }
+
+    // multipart ones got admitted on their heads, before their bodies were decoded
+    if (!(req instanceof MultipartFullHttpRequest)) {
+      HttpResponseStatus rejected = admit(ctx, req);
+      if (null != rejected) {
+        RejectedResponses.reject(ctx, req, rejected);
+        return;
+      }
+    }
+
+    if (null == concurrencyGate) {
+      accept(ctx, req, false);
+    } else {
+      concurrencyGate.enter(ctx, req, () -> accept(ctx, req, true));
+    }
+  }
+
+  /**
+   * The cheap checks, needing nothing but the request head
+   *
+   * @return the status to turn `req` away with, null if admitted
+   */
+  HttpResponseStatus admit(ChannelHandlerContext ctx, HttpRequest req) {
+    if (null != loadShedder && !loadShedder.admit(req)) {
+      return SERVICE_UNAVAILABLE;
+    }
+
+    // abusive clients should not use up the global throttle
+    if (null != clientQuota && !clientQuota.admit(ctx, req)) {
+      return TOO_MANY_REQUESTS;
+    }
+
+    if (!admissionController.admit()) {
+      return TOO_MANY_REQUESTS;
+    }
+    return null;
+  }
+
+  private void accept(ChannelHandlerContext ctx, FullHttpRequest req, boolean limited) {
+    RequestWrapper requestWrapper;
+    try {
+      requestWrapper = getRequestWrapper(req);
+    } catch (RuntimeException e) {
+      if (limited) {
+        concurrencyGate.exit();
+      }
+      throw e;
+    }
 
     String mediaType = MIMETYPES_FILE_TYPE_MAP.getContentType(requestWrapper.getPath());
     ResponseWrapper responseWrapper = new ResponseWrapper(mediaType);
 
+    RequestContext context = new RequestContext(ctx, req, requestWrapper, responseWrapper);
+    if (limited) {
+      context.markLimited();
+    }
+
+    if (dispatcher.isInline()) {
+      service(context);
+      return;
+    }
+
+    context.detach();
     try {
-      if (null != rateLimiter && !rateLimiter.tryAcquire(200, TimeUnit.MILLISECONDS)) {
-        responseWrapper.setStatus(TOO_MANY_REQUESTS);
+      dispatcher.dispatch(() -> service(context));
+
+    } catch (RejectedExecutionException e) {
+      context.release();
+      if (limited) {
+        concurrencyGate.exit();
       }
+      responseWrapper.setMediaType(TEXT_PLAIN.getValue());
+      responseWrapper.setStatus(SERVICE_UNAVAILABLE);
+      responseWrapper.setContent(SERVICE_UNAVAILABLE.reasonPhrase().getBytes());
+      translateResponse(context);
+    }
+  }
 
-      long start = System.currentTimeMillis();
+  private void service(RequestContext context) {
+    ResponseWrapper responseWrapper = context.getResponseWrapper();
+    try {
+      processRequest(context.getRequestWrapper(), responseWrapper);
 
-      processRequest(requestWrapper, responseWrapper);
-      translateContent(requestWrapper, responseWrapper);
+    } catch (Exception e) {
+      onError(responseWrapper, e);
+    }
 
-      long end = System.currentTimeMillis();
-      if (LOGGER.isDebugEnabled()) {
-        LOGGER.debug("{} took: {}ms", requestWrapper.getPath(), (end - start));
-      }
+    Object result = responseWrapper.getResult();
+    if (result instanceof CompletionStage) {
+      context.detach();
+      ((CompletionStage<?>) result).whenComplete((value, error) -> {
+        if (null == error) {
+          responseWrapper.setResult(value);
+        } else {
+          responseWrapper.setResult(DefaultRequestProcessor.handleException(unwrap(error), responseWrapper));
+        }
+        complete(context);
+      });
+      return;
+    }
+
+    complete(context);
+  }
+
+  private Throwable unwrap(Throwable error) {
+    if (error instanceof CompletionException && null != error.getCause()) {
+      return error.getCause();
+    }
+    return error;
+  }
+
+  private void complete(RequestContext context) {
+    RequestWrapper requestWrapper = context.getRequestWrapper();
+    ResponseWrapper responseWrapper = context.getResponseWrapper();
+    try {
+      translateContent(context.getCtx(), requestWrapper, responseWrapper);
 
     } catch (Exception e) {
-      LOGGER.error(e.getMessage(), e);
-      responseWrapper.setMediaType(TEXT_PLAIN.getValue());
-      responseWrapper.setStatus(BAD_REQUEST);
-      responseWrapper.setContent(e.getMessage().getBytes());
+      onError(responseWrapper, e);
+    }
 
-    } finally {
-      translateResponse(ctx, req, responseWrapper);
+    if (context.isLimited()) {
+      concurrencyGate.exit(System.nanoTime() - context.getStartNanos());
+    }
+
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("{} took: {}ms", requestWrapper.getPath(), (System.currentTimeMillis() - context.getStart()));
     }
+
+    if (context.isDetached()) {
+      writeResponseOnEventLoop(context);
+    } else {
+      translateResponse(context);
+    }
+  }
+
+  private void onError(ResponseWrapper responseWrapper, Exception e) {
+    LOGGER.error(e.getMessage(), e);
+    responseWrapper.setMediaType(TEXT_PLAIN.getValue());
+    responseWrapper.setStatus(BAD_REQUEST);
+    responseWrapper.setContent(e.getMessage().getBytes());
+  }
+
+  /**
+   * `channelReadComplete` has already flushed by the time a worker or a callback finishes, so flushing explicitly.
+   */
+  private void writeResponseOnEventLoop(RequestContext context) {
+    ChannelHandlerContext ctx = context.getCtx();
+    ctx.executor().execute(() -> {
+      try {
+        translateResponse(context);
+        ctx.flush();
+      } finally {
+        context.release();
+      }
+    });
   }
 
   private void processRequest(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
@@ -140,8 +325,10 @@ class LaputaRequestProcessor {
     }
   }
 
-  private void translateContent(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
-    if (null != responseWrapper.getMessenger().getRedirectTo()) {
+  private void translateContent(ChannelHandlerContext ctx,
+                                RequestWrapper requestWrapper,
+                                ResponseWrapper responseWrapper) {
+    if (null != responseWrapper.getMessenger().getRedirectTo() || null != responseWrapper.getFile()) {
       return;
     }
 
@@ -150,33 +337,68 @@ class LaputaRequestProcessor {
       return;
     }
 
+    Object result = responseWrapper.getResult();
+    if (StreamedContent.isStream(result)) {
+      StreamContentEncoder encoder = translator.getStreamEncoder();
+      if (null != encoder) {
+        responseWrapper.setChunkedContent(new StreamedContent(result, encoder));
+        return;
+      }
+      if (COLLECTING_TRANSLATORS.add(translator.getClass())) {
+        LOGGER.warn("{} can not stream, the whole stream is collected in memory instead, e.g. for: {}",
+            translator.getClass().getName(), requestWrapper.getPath());
+      }
+      responseWrapper.setResult(StreamedContent.collect(result));
+    }
+
+    ByteBuf buffer = ctx.alloc().ioBuffer();
     try {
-      byte[] content = translator.translate(requestWrapper, responseWrapper);
-      responseWrapper.setContent(content);
+      translator.translate(requestWrapper, responseWrapper, buffer);
+      responseWrapper.setContentBuffer(buffer);
+
+    } catch (RuntimeException e) {
+      buffer.release();
+      throw e;
 
     } catch (IOException e) {
+      buffer.release();
       responseWrapper.setRedirectTo(PATH_500);
       responseWrapper.setData("error", INTERNAL_SERVER_ERROR.reasonPhrase());
       LOGGER.error(e.getMessage(), e);
     }
   }
 
-  private void translateResponse(ChannelHandlerContext ctx, FullHttpRequest req, ResponseWrapper responseWrapper) {
-    ResponseTranslators.search(translator -> {
-      if (translator.fits(responseWrapper)) {
-        translator.translate(ctx, req, responseWrapper);
-        return true;
+  private void translateResponse(RequestContext context) {
+    ResponseWrapper responseWrapper = context.getResponseWrapper();
+    try {
+      ResponseTranslators.search(translator -> {
+        if (translator.fits(responseWrapper)) {
+          translator.translate(context.getCtx(), context.getReq(), responseWrapper);
+          return true;
 
-      } else {
-        return false;
-      }
-    });
+        } else {
+          return false;
+        }
+      });
+
+    } catch (RuntimeException e) {
+      // a response per request, or the pipelined ones after it would be held back;
+      // part of the response may have gone out already, so closing after it
+      LOGGER.error(e.getMessage(), e);
+      HttpUtil.setKeepAlive(context.getReq(), false);
+      RejectedResponses.reject(context.getCtx(), context.getReq(), INTERNAL_SERVER_ERROR);
+    }
   }
 
   private RequestWrapper getRequestWrapper(FullHttpRequest request) {
     HttpMethod method = request.method();
     String uri = request.uri();
 
+    if (request instanceof MultipartFullHttpRequest) {
+      Map<String, List<String>> parameters = ((MultipartFullHttpRequest) request).getParameters();
+      return new RequestWrapper(method, request.headers(), uri, uri, parameters, null);
+    }
+
     if (HttpMethod.POST.equals(method) ||
         HttpMethod.PUT.equals(method) ||
         HttpMethod.PATCH.equals(method)) {
@@ -191,7 +413,7 @@ class LaputaRequestProcessor {
 
     HttpPostRequestDecoder decoder;
     try {
-      decoder = new HttpPostRequestDecoder(HTTP_DATA_FACTORY, request);
+      decoder = new HttpPostRequestDecoder(FormParameters.HTTP_DATA_FACTORY, request);
     } catch (HttpPostRequestDecoder.ErrorDataDecoderException e) {
       LOGGER.error("Decoder exception: {}", data);
       throw new RequestProcessingException(e.getMessage(), e);
@@ -205,14 +427,7 @@ class LaputaRequestProcessor {
 
     try {
       for (InterfaceHttpData bodyData : bodyDatas) {
-        if (HttpDataType.Attribute == bodyData.getHttpDataType()) {
-          Attribute attribute = (Attribute) bodyData;
-          addToParameters(parameters, attribute);
-
-        } else if (HttpDataType.FileUpload == bodyData.getHttpDataType()) {
-          FileUpload fileUpload = (FileUpload) bodyData;
-          addToParameters(parameters, fileUpload);
-        }
+        FormParameters.add(parameters, bodyData);
       }
 
       return new RequestWrapper(request.method(), request.headers(), uri, uri, parameters, data);
@@ -225,32 +440,6 @@ class LaputaRequestProcessor {
     }
   }
 
-  private void addToParameters(Map<String, List<String>> parameters, Attribute attribute) {
-    try {
-      String value = attribute.getValue();
-      if (Strings.isNullOrEmpty(value)) {
-        return;
-      }
-
-      String name = attribute.getName();
-      List<String> params = parameters.computeIfAbsent(name, k -> new ArrayList<>());
-      params.add(value);
-    } catch (IOException e) {
-      throw new RequestProcessingException(e.getMessage(), e);
-    }
-  }
-
-  private void addToParameters(Map<String, List<String>> parameters, FileUpload fileUpload) {
-    try {
-      File uploadedFile = fileUpload.getFile();
-      parameters.put(fileUpload.getName() + FILE, Lists.newArrayList(uploadedFile.getAbsolutePath()));
-      parameters.put(fileUpload.getName() + FILENAME, Lists.newArrayList(fileUpload.getFilename()));
-      parameters.put(fileUpload.getName() + CONTENT_TYPE, Lists.newArrayList(fileUpload.getContentType()));
-    } catch (IOException e) {
-      throw new FileUploadException("Failed to upload file: " + e.getMessage(), e);
-    }
-  }
-
   private RequestWrapper wrapGetRequest(FullHttpRequest request, HttpMethod method, String uri) {
     QueryStringDecoder queryStringDecoder = getQueryStringDecoder(uri);
     String path = queryStringDecoder.path();
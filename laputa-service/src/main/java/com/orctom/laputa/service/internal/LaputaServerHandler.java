@@ -1,9 +1,8 @@
 package com.orctom.laputa.service.internal;
 
 import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.util.HttpStreams;
 import com.typesafe.config.Config;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufHolder;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
@@ -22,6 +21,7 @@ import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
 import io.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
 import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,11 +69,6 @@ public class LaputaServerHandler extends ChannelInboundHandlerAdapter {
 
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) {
-    ByteBuf byteBuf = null;
-    if (msg instanceof ByteBufHolder) {
-      byteBuf = ((ByteBufHolder) msg).content();
-    }
-
     try {
       if (msg instanceof FullHttpRequest) {
         handleHttpRequest(ctx, (FullHttpRequest) msg);
@@ -86,18 +81,22 @@ public class LaputaServerHandler extends ChannelInboundHandlerAdapter {
       }
 
     } catch (Exception e) {
-      ctx.writeAndFlush(HttpResponseStatus.INTERNAL_SERVER_ERROR);
       LOGGER.error(e.getMessage(), e);
+      // a response per request, or the pipelined ones after it would be held back
+      if (msg instanceof FullHttpRequest) {
+        RejectedResponses.reject(ctx, (FullHttpRequest) msg, HttpResponseStatus.INTERNAL_SERVER_ERROR);
+      } else {
+        ctx.writeAndFlush(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+      }
 
     } finally {
-      if (null != byteBuf) {
-        byteBuf.release();
-      }
+      ReferenceCountUtil.release(msg);
     }
   }
 
   private void handleHttpRequest(ChannelHandlerContext ctx, FullHttpRequest req) {
-    if (HttpUtil.is100ContinueExpected(req)) {
+    // over HTTP/2 the body has already been received
+    if (HttpUtil.is100ContinueExpected(req) && !HttpStreams.isHttp2(req)) {
       ctx.write(new DefaultFullHttpResponse(HTTP_1_1, CONTINUE));
     }
 
@@ -1,8 +1,11 @@
 package com.orctom.laputa.service.internal;
 
+import com.orctom.laputa.service.config.Configurator;
+import com.typesafe.config.Config;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.group.ChannelGroup;
 import io.netty.handler.codec.http.HttpContentCompressor;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
@@ -10,40 +13,114 @@ import io.netty.handler.codec.http.cors.CorsConfig;
 import io.netty.handler.codec.http.cors.CorsHandler;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandler;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapter;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.stream.ChunkedWriteHandler;
-import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.handler.timeout.IdleStateHandler;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-class LaputaServerInitializer extends ChannelInitializer<SocketChannel> {
+import static com.orctom.laputa.service.Constants.CFG_SERVER_BODY_MAX_LENGTH;
+import static com.orctom.laputa.service.Constants.CFG_SERVER_BODY_MULTIPART_MAX_LENGTH;
+import static com.orctom.laputa.service.Constants.CFG_SERVER_CONNECTIONS_HEADER_TIMEOUT;
+import static com.orctom.laputa.service.Constants.CFG_SERVER_CONNECTIONS_IDLE_TIMEOUT;
+import static com.orctom.laputa.service.Constants.CFG_SERVER_HTTP2_ENABLED;
+import static com.orctom.laputa.service.Constants.CFG_SERVER_PIPELINING_LIMIT;
+
+class LaputaServerInitializer extends ChannelInitializer<Channel> {
+
+  private static final String IDLE_CONNECTION_REAPER = "idleConnectionReaper";
 
   private final SslContext sslContext;
   private final CorsConfig corsConfig;
   private final String webSocketPath;
   private final LaputaRequestProcessor requestProcessor;
+  private final ChannelGroup connections;
+  private final AtomicInteger inFlight;
+  private final int bodyMaxLength;
+  private final long multipartMaxLength;
+  private final boolean http2Enabled;
+  private final int pipeliningLimit;
+  private final long idleTimeoutNanos;
+  private final long headerTimeoutNanos;
 
   LaputaServerInitializer(SslContext sslContext,
                           CorsConfig corsConfig,
                           String webSocketPath,
-                          LaputaRequestProcessor requestProcessor) {
+                          LaputaRequestProcessor requestProcessor,
+                          ChannelGroup connections) {
     this.sslContext = sslContext;
     this.corsConfig = corsConfig;
     this.webSocketPath = webSocketPath;
     this.requestProcessor = requestProcessor;
+    this.connections = connections;
+    this.inFlight = null == requestProcessor ? new AtomicInteger() : requestProcessor.getInFlightCounter();
+
+    Config config = Configurator.getInstance().getConfig();
+    this.bodyMaxLength = (int) Math.min(Integer.MAX_VALUE, config.getBytes(CFG_SERVER_BODY_MAX_LENGTH));
+    this.multipartMaxLength = config.getBytes(CFG_SERVER_BODY_MULTIPART_MAX_LENGTH);
+    this.http2Enabled = config.getBoolean(CFG_SERVER_HTTP2_ENABLED);
+    this.pipeliningLimit = config.getInt(CFG_SERVER_PIPELINING_LIMIT);
+    this.idleTimeoutNanos = config.getDuration(CFG_SERVER_CONNECTIONS_IDLE_TIMEOUT, TimeUnit.NANOSECONDS);
+    this.headerTimeoutNanos = config.getDuration(CFG_SERVER_CONNECTIONS_HEADER_TIMEOUT, TimeUnit.NANOSECONDS);
   }
 
   @Override
-  public void initChannel(SocketChannel ch) {
+  public void initChannel(Channel ch) {
+    connections.add(ch);
     ChannelPipeline p = ch.pipeline();
-    p.addLast(new ReadTimeoutHandler(60, TimeUnit.SECONDS));
+    if (idleTimeoutNanos > 0) {
+      p.addLast(new IdleStateHandler(0, 0, idleTimeoutNanos, TimeUnit.NANOSECONDS));
+    }
     if (sslContext != null) {
       p.addLast(sslContext.newHandler(ch.alloc()));
     }
-    p.addLast(new HttpContentCompressor(5));
-    p.addLast(new HttpServerCodec());
-    p.addLast(new HttpObjectAggregator(1048576));
+    // one flush (one syscall, one TLS record) for all the responses written within a read or an event loop run
+    p.addLast(new FlushConsolidationHandler(FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, true));
+    if (headerTimeoutNanos > 0) {
+      p.addLast(new HeaderReadTimeout(headerTimeoutNanos).firstBytes());
+    }
+
+    // the protocol handlers go in front of the reaper, it covers the connections still detecting the protocol as well
+    p.addLast(IDLE_CONNECTION_REAPER, new IdleConnectionReaper(inFlight));
+
+    if (sslContext != null) {
+      if (isAlpnConfigured()) {
+        p.addBefore(IDLE_CONNECTION_REAPER, null, new Http2OrHttpHandler(this));
+        return;
+      }
+
+    } else if (http2Enabled) {
+      p.addBefore(IDLE_CONNECTION_REAPER, null, new Http2PrefaceDetector(this));
+      return;
+    }
+
+    configureHttp1(p);
+  }
+
+  private boolean isAlpnConfigured() {
+    return !sslContext.applicationProtocolNegotiator().protocols().isEmpty();
+  }
+
+  void configureHttp1(ChannelPipeline p) {
+    p.addBefore(IDLE_CONNECTION_REAPER, null, new HttpContentCompressor(5));
+    p.addBefore(IDLE_CONNECTION_REAPER, null, new HttpServerCodec());
     p.addLast(new ChunkedWriteHandler());
+    // numbered right off the codec, the responses of the handlers turning requests away below go in order as well
+    p.addLast(new PipeliningSequencer(pipeliningLimit));
+    HeaderReadTimeout headerReadTimeout = HeaderReadTimeout.get(p);
+    if (null != headerReadTimeout) {
+      p.addLast(headerReadTimeout);
+    }
+    p.addLast(new MultipartStreamingDecoder(multipartMaxLength, requestProcessor));
+    p.addLast(new HttpObjectAggregator(bodyMaxLength));
     if (null != corsConfig) {
       p.addLast(new CorsHandler(corsConfig));
     }
@@ -51,4 +128,31 @@ class LaputaServerInitializer extends ChannelInitializer<SocketChannel> {
     p.addLast(new WebSocketServerProtocolHandler(webSocketPath, null, true));
     p.addLast(new LaputaServerHandler(null != sslContext, requestProcessor));
   }
+
+  /**
+   * Streams come in as {@link io.netty.handler.codec.http.FullHttpRequest}s and go out as HTTP/1.1 responses,
+   * so the rest of the pipeline stays the same.
+   * The chunks carry no stream id, the {@link Http2ChunkedWriteHandler} writes them out per stream.
+   */
+  void configureHttp2(ChannelPipeline p) {
+    Http2Connection connection = new DefaultHttp2Connection(true);
+    InboundHttp2ToHttpAdapter listener = new InboundHttp2ToHttpAdapterBuilder(connection)
+        .maxContentLength(bodyMaxLength)
+        .propagateSettings(false)
+        .validateHttpHeaders(false)
+        .build();
+
+    HeaderReadTimeout headerReadTimeout = HeaderReadTimeout.get(p);
+    if (null != headerReadTimeout) {
+      headerReadTimeout.detach(p);
+    }
+    HttpToHttp2ConnectionHandler http2Handler = new HttpToHttp2ConnectionHandlerBuilder()
+        .frameListener(listener)
+        .connection(connection)
+        .build();
+    p.addBefore(IDLE_CONNECTION_REAPER, null, http2Handler);
+    p.addBefore(IDLE_CONNECTION_REAPER, null, new Http2ChunkedWriteHandler(http2Handler));
+    p.addLast(new ReadBackpressure());
+    p.addLast(new LaputaServerHandler(null != sslContext, requestProcessor));
+  }
 }
@@ -0,0 +1,179 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.exception.IllegalConfigException;
+import com.orctom.laputa.service.config.MappingConfig;
+import com.orctom.laputa.service.model.PriorityLevel;
+import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.service.processor.RequestProcessor;
+import com.orctom.laputa.utils.AntPathMatcher;
+import com.orctom.laputa.utils.SimpleMetrics;
+import com.typesafe.config.Config;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.orctom.laputa.service.Constants.*;
+import static io.netty.handler.codec.http.HttpHeaderNames.AUTHORIZATION;
+import static io.netty.handler.codec.http.HttpHeaderNames.COOKIE;
+
+/**
+ * Sheds requests of the lower {@link PriorityLevel}s first when the event loops fall behind.
+ * Every level crossed, by either lag or pending tasks, sheds one more lane:
+ * <li>1) low</li>
+ * <li>2) anonymous normal</li>
+ * <li>3) normal</li>
+ * <li>4) high</li>
+ * Critical ones are never shed.
+ */
+class LoadShedder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadShedder.class);
+
+  private static final String GAUGE_LEVEL = "shedding.level";
+  private static final String GAUGE_DROPPED = "shedding.dropped";
+  private static final String GAUGE_LAG = "eventLoop.lag";
+  private static final String GAUGE_PENDING_TASKS = "eventLoop.pendingTasks";
+
+  private static final String KEY_PATH = "path";
+  private static final String KEY_PRIORITY = "priority";
+
+  private static final int LEVELS = 4;
+
+  private final EventLoopMonitor monitor;
+  private final long[] lagThresholds;
+  private final long[] pendingTasksThresholds;
+  private final Map<String, PriorityLevel> priorities = new LinkedHashMap<>();
+  private final List<RequestProcessor> requestProcessors;
+
+  private final LongAdder dropped = new LongAdder();
+
+  private LoadShedder(Config config, List<RequestProcessor> requestProcessors) {
+    monitor = new EventLoopMonitor(config.getDuration(CFG_SERVER_SHEDDING_INTERVAL, TimeUnit.NANOSECONDS));
+    lagThresholds = toThresholds(
+        CFG_SERVER_SHEDDING_LAG,
+        config.getDurationList(CFG_SERVER_SHEDDING_LAG, TimeUnit.NANOSECONDS)
+    );
+    pendingTasksThresholds = toThresholds(
+        CFG_SERVER_SHEDDING_PENDING_TASKS,
+        config.getLongList(CFG_SERVER_SHEDDING_PENDING_TASKS)
+    );
+    if (config.hasPath(CFG_SERVER_SHEDDING_PRIORITIES)) {
+      for (Config priority : config.getConfigList(CFG_SERVER_SHEDDING_PRIORITIES)) {
+        priorities.put(priority.getString(KEY_PATH), toPriority(priority.getString(KEY_PRIORITY)));
+      }
+    }
+    this.requestProcessors = requestProcessors;
+    LOGGER.info("Shedding load by priorities, configured: {}", priorities);
+  }
+
+  /**
+   * @return null if `server.shedding` is not enabled
+   */
+  static LoadShedder create(Config config, List<RequestProcessor> requestProcessors) {
+    if (!config.getBoolean(CFG_SERVER_SHEDDING_ENABLED)) {
+      return null;
+    }
+    return new LoadShedder(config, requestProcessors);
+  }
+
+  private static long[] toThresholds(String key, List<Long> values) {
+    if (LEVELS != values.size()) {
+      throw new IllegalConfigException("Expecting " + LEVELS + " thresholds of `" + key + "`, but got: " + values);
+    }
+    return values.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  private static PriorityLevel toPriority(String value) {
+    try {
+      return PriorityLevel.valueOf(value.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalConfigException("Unknown priority: " + value);
+    }
+  }
+
+  void watch(EventLoopGroup group) {
+    monitor.watch(group);
+  }
+
+  void registerGauges(SimpleMetrics metrics) {
+    metrics.gauge(GAUGE_LEVEL, () -> String.valueOf(getLevel()));
+    metrics.gauge(GAUGE_DROPPED, () -> String.valueOf(dropped.sum()));
+    metrics.gauge(GAUGE_LAG, () -> TimeUnit.NANOSECONDS.toMillis(monitor.getLagNanos()) + "ms");
+    metrics.gauge(GAUGE_PENDING_TASKS, () -> String.valueOf(monitor.getPendingTasks()));
+  }
+
+  /**
+   * The priority is only looked up while shedding
+   */
+  boolean admit(HttpRequest req) {
+    int level = getLevel();
+    if (0 == level || rank(req) > level) {
+      return true;
+    }
+
+    dropped.increment();
+    return false;
+  }
+
+  private int getLevel() {
+    long lag = monitor.getLagNanos();
+    int pendingTasks = monitor.getPendingTasks();
+    int level = 0;
+    while (level < LEVELS && (lag > lagThresholds[level] || pendingTasks > pendingTasksThresholds[level])) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * @return the shedding level from which on `req` gets shed
+   */
+  private int rank(HttpRequest req) {
+    switch (getPriority(req)) {
+      case LOW:
+        return 1;
+      case NORMAL:
+        return isAnonymous(req.headers()) ? 2 : 3;
+      case HIGH:
+        return 4;
+      default:
+        return Integer.MAX_VALUE;
+    }
+  }
+
+  private PriorityLevel getPriority(HttpRequest req) {
+    String path = new QueryStringDecoder(req.uri()).path();
+
+    for (Map.Entry<String, PriorityLevel> entry : priorities.entrySet()) {
+      if (AntPathMatcher.matches(entry.getKey(), path)) {
+        return entry.getValue();
+      }
+    }
+
+    for (RequestProcessor requestProcessor : requestProcessors) {
+      PriorityLevel priority = requestProcessor.getPriority(path);
+      if (null != priority) {
+        return priority;
+      }
+    }
+
+    RequestMapping mapping = MappingConfig.getInstance().getMapping(
+        path,
+        DefaultRequestProcessor.getHttpMethod(req.method())
+    );
+    return null == mapping ? PriorityLevel.NORMAL : mapping.getPriority();
+  }
+
+  private boolean isAnonymous(HttpHeaders headers) {
+    return !headers.contains(AUTHORIZATION) && !headers.contains(COOKIE);
+  }
+}
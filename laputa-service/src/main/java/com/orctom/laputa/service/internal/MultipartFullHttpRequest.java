@@ -0,0 +1,50 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A multipart request decoded while streaming in, with no content but the parameters.
+ * The uploaded files are kept till the request gets released.
+ */
+class MultipartFullHttpRequest extends DefaultFullHttpRequest {
+
+  private final Map<String, List<String>> parameters;
+  private final HttpPostRequestDecoder decoder;
+
+  MultipartFullHttpRequest(HttpRequest request,
+                           HttpHeaders trailingHeaders,
+                           Map<String, List<String>> parameters,
+                           HttpPostRequestDecoder decoder) {
+    super(request.protocolVersion(), request.method(), request.uri(), Unpooled.buffer(0), request.headers(), trailingHeaders);
+    this.parameters = parameters;
+    this.decoder = decoder;
+  }
+
+  Map<String, List<String>> getParameters() {
+    return parameters;
+  }
+
+  @Override
+  public boolean release() {
+    return destroyIfReleased(super.release());
+  }
+
+  @Override
+  public boolean release(int decrement) {
+    return destroyIfReleased(super.release(decrement));
+  }
+
+  private boolean destroyIfReleased(boolean released) {
+    if (released) {
+      decoder.destroy();
+    }
+    return released;
+  }
+}
@@ -0,0 +1,172 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.exception.FastException;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.netty.handler.codec.http.HttpHeaderNames.EXPECT;
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.CONTINUE;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * Decodes multipart requests chunk by chunk as they come in, instead of aggregating them in memory first.
+ * Parts bigger than `server.postData.useDisk.threshold` go to disk, so uploads take constant memory.
+ * Hands a {@link MultipartFullHttpRequest} over once the last chunk arrived, other requests are passed through.
+ * Multipart requests are admitted (shedding, quota, throttle) on their heads, nothing gets written to disk for
+ * the ones turned away.
+ */
+class MultipartStreamingDecoder extends ChannelInboundHandlerAdapter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MultipartStreamingDecoder.class);
+
+  private final long maxLength;
+  private final LaputaRequestProcessor requestProcessor;
+
+  private HttpRequest request;
+  private HttpPostRequestDecoder decoder;
+  private Map<String, List<String>> parameters;
+  private long received;
+  private boolean discarding;
+
+  MultipartStreamingDecoder(long maxLength, LaputaRequestProcessor requestProcessor) {
+    this.maxLength = maxLength;
+    this.requestProcessor = requestProcessor;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) {
+    if (msg instanceof HttpRequest && HttpPostRequestDecoder.isMultipart((HttpRequest) msg)) {
+      start(ctx, (HttpRequest) msg);
+      return;
+    }
+
+    if (msg instanceof HttpContent && (null != decoder || discarding)) {
+      try {
+        if (discarding) {
+          discarding = !(msg instanceof LastHttpContent);
+        } else {
+          offer(ctx, (HttpContent) msg);
+        }
+      } finally {
+        ReferenceCountUtil.release(msg);
+      }
+      return;
+    }
+
+    ctx.fireChannelRead(msg);
+  }
+
+  private void start(ChannelHandlerContext ctx, HttpRequest req) {
+    request = req;
+    received = 0;
+
+    if (HttpUtil.getContentLength(req, -1L) > maxLength) {
+      reject(ctx, REQUEST_ENTITY_TOO_LARGE);
+      return;
+    }
+
+    HttpResponseStatus rejected = requestProcessor.admit(ctx, req);
+    if (null != rejected) {
+      reject(ctx, rejected);
+      return;
+    }
+
+    if (HttpUtil.is100ContinueExpected(req)) {
+      ctx.writeAndFlush(new DefaultFullHttpResponse(HTTP_1_1, CONTINUE));
+      req.headers().remove(EXPECT);
+    }
+
+    try {
+      decoder = new HttpPostRequestDecoder(FormParameters.HTTP_DATA_FACTORY, req);
+      parameters = new HashMap<>();
+    } catch (HttpPostRequestDecoder.ErrorDataDecoderException e) {
+      LOGGER.error("Decoder exception: {}", e.getMessage());
+      reject(ctx, BAD_REQUEST);
+    }
+  }
+
+  private void offer(ChannelHandlerContext ctx, HttpContent content) {
+    received += content.content().readableBytes();
+    if (received > maxLength) {
+      reject(ctx, REQUEST_ENTITY_TOO_LARGE);
+      return;
+    }
+
+    try {
+      decoder.offer(content);
+      drain();
+    } catch (HttpPostRequestDecoder.ErrorDataDecoderException | FastException e) {
+      // malformed bodies, or parts failing to be turned into parameters (e.g. a file upload kept in memory)
+      LOGGER.error("Decoder exception: {}", e.getMessage());
+      reject(ctx, BAD_REQUEST);
+      return;
+    }
+
+    if (content instanceof LastHttpContent) {
+      MultipartFullHttpRequest full = new MultipartFullHttpRequest(
+          request, ((LastHttpContent) content).trailingHeaders(), parameters, decoder
+      );
+      reset();
+      ctx.fireChannelRead(full);
+    }
+  }
+
+  private void drain() {
+    try {
+      while (decoder.hasNext()) {
+        InterfaceHttpData data = decoder.next();
+        if (null != data) {
+          FormParameters.add(parameters, data);
+        }
+      }
+    } catch (HttpPostRequestDecoder.EndOfDataDecoderException ignored) {
+      // all parts decoded
+    }
+  }
+
+  /**
+   * The rest of the body is discarded and the connection closed after responding
+   */
+  private void reject(ChannelHandlerContext ctx, HttpResponseStatus status) {
+    destroy();
+    discarding = true;
+    HttpUtil.setKeepAlive(request, false);
+    RejectedResponses.reject(ctx, request, status);
+  }
+
+  private void destroy() {
+    if (null != decoder) {
+      decoder.destroy();
+    }
+    reset();
+  }
+
+  private void reset() {
+    decoder = null;
+    parameters = null;
+    received = 0;
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    destroy();
+    super.channelInactive(ctx);
+  }
+}
@@ -0,0 +1,308 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.util.HttpStreams;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.SWITCHING_PROTOCOLS;
+
+/**
+ * HTTP/1.1 pipelining: requests of a connection get numbered on the way in, right off the codec,
+ * responses finishing out of order (e.g. on the executor) are held back till the ones before them are written.
+ * The extension headers carried by the messages handed over internally are stripped off the requests coming in,
+ * a client can not pose as an HTTP/2 stream, nor echo them back.
+ * The numbers are kept here rather than on the requests, the response translators look them up
+ * through {@link HttpStreams#SEQUENCES} by the headers of the request, which stay the same once aggregated.
+ * Whole responses are written in one go on the event loop, so the messages following a response header
+ * (chunked inputs, file regions, contents) belong to it till its last content.
+ * The handlers in between answer without the number (e.g. cors preflights, `413`s, `100 Continue`s):
+ * while a request is being read it is the one answered, otherwise (e.g. a `408` on a request never decoded)
+ * the response takes a turn of its own after the ones pending.
+ * Stops reading from the connection while `limit` requests are waiting for their responses,
+ * or while the connection is not writable.
+ */
+class PipeliningSequencer extends ReadBackpressure {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PipeliningSequencer.class);
+
+  private static final CharSequence STREAM_ID = HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text();
+
+  private final int limit;
+
+  private int nextRequest;
+  private int nextResponse;
+
+  /**
+   * A request is being passed on, the responses written meanwhile without a number are for it
+   */
+  private boolean reading;
+
+  /**
+   * The requests not answered yet, in order
+   */
+  private final Deque<SequencedRequest> requests = new ArrayDeque<>();
+
+  private final Map<Integer, PendingResponse> pending = new HashMap<>();
+
+  /**
+   * The out of order response being held back
+   */
+  private PendingResponse holding;
+
+  /**
+   * The in order response being written through
+   */
+  private boolean passing;
+
+  PipeliningSequencer(int limit) {
+    this.limit = limit;
+  }
+
+  @Override
+  public void handlerAdded(ChannelHandlerContext ctx) {
+    ctx.channel().attr(HttpStreams.SEQUENCES).set(this::sequenceOf);
+  }
+
+  /**
+   * Called from the response translators, on the event loop as well
+   */
+  private int sequenceOf(HttpMessage req) {
+    HttpHeaders headers = req.headers();
+    for (SequencedRequest request : requests) {
+      if (request.headers == headers) {
+        return request.sequence;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) {
+    if (!(msg instanceof HttpObject)) {
+      ctx.fireChannelRead(msg);
+      return;
+    }
+
+    if (msg instanceof HttpRequest) {
+      HttpHeaders headers = ((HttpRequest) msg).headers();
+      headers.remove(STREAM_ID);
+      headers.remove(HttpStreams.SEQUENCE);
+      requests.add(new SequencedRequest(headers, nextRequest++));
+      updateAutoRead(ctx);
+    }
+    reading = true;
+    try {
+      ctx.fireChannelRead(msg);
+    } finally {
+      reading = false;
+    }
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+    if (msg instanceof HttpResponse) {
+      HttpResponse res = (HttpResponse) msg;
+      String sequence = res.headers().get(HttpStreams.SEQUENCE);
+      if (null != sequence) {
+        res.headers().remove(HttpStreams.SEQUENCE);
+        writeResponse(ctx, Integer.parseInt(sequence), msg, promise);
+        return;
+      }
+    }
+
+    if (null != holding) {
+      holding.add(msg, promise);
+      if (holding.complete) {
+        holding = null;
+      }
+      return;
+    }
+
+    if (passing) {
+      ctx.write(msg, promise);
+      if (isLast(msg)) {
+        passing = false;
+        advance(ctx);
+      }
+      return;
+    }
+
+    if (msg instanceof HttpResponse) {
+      writeResponse(ctx, reading ? nextRequest - 1 : nextRequest++, msg, promise);
+      return;
+    }
+
+    // not part of any response, e.g. websocket frames
+    ctx.write(msg, promise);
+  }
+
+  private void writeResponse(ChannelHandlerContext ctx, int sequence, Object msg, ChannelPromise promise) {
+    if (sequence < nextResponse) {
+      // a request answered already, nothing to hold it back for
+      ctx.write(msg, promise);
+      return;
+    }
+
+    if (sequence != nextResponse) {
+      PendingResponse response = pending.computeIfAbsent(sequence, key -> new PendingResponse());
+      response.add(msg, promise);
+      if (!isInterim(msg)) {
+        holding = response.complete ? null : response;
+      }
+      return;
+    }
+
+    ctx.write(msg, promise);
+    if (isInterim(msg)) {
+      return;
+    }
+    if (isLast(msg)) {
+      advance(ctx);
+    } else {
+      passing = true;
+    }
+  }
+
+  /**
+   * Writes the held back responses that are next in line, the caller of `write()` flushes them all at once
+   */
+  private void advance(ChannelHandlerContext ctx) {
+    nextResponse++;
+    PendingResponse response;
+    while (null != (response = pending.remove(nextResponse))) {
+      for (PendingWrite write : response.writes) {
+        ctx.write(write.msg, write.promise);
+      }
+      if (!response.complete) {
+        // only the `100 Continue` so far, or the rest of it is still being written
+        if (response == holding) {
+          holding = null;
+          passing = true;
+        }
+        break;
+      }
+      nextResponse++;
+    }
+    while (!requests.isEmpty() && requests.peekFirst().sequence < nextResponse) {
+      requests.pollFirst();
+    }
+
+    updateAutoRead(ctx);
+  }
+
+  @Override
+  protected boolean canRead(ChannelHandlerContext ctx) {
+    return super.canRead(ctx) && nextRequest - nextResponse < limit;
+  }
+
+  private static boolean isLast(Object msg) {
+    return (msg instanceof LastHttpContent && !isInterim(msg)) || msg instanceof ChunkedInput;
+  }
+
+  /**
+   * `100 Continue` is followed by the actual response, `101 Switching Protocols` is the last one
+   */
+  private static boolean isInterim(Object msg) {
+    if (!(msg instanceof HttpResponse)) {
+      return false;
+    }
+    HttpResponseStatus status = ((HttpResponse) msg).status();
+    return HttpStatusClass.INFORMATIONAL == status.codeClass() && SWITCHING_PROTOCOLS.code() != status.code();
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) {
+    ctx.channel().attr(HttpStreams.SEQUENCES).set(null);
+    discardPending();
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    discardPending();
+    super.channelInactive(ctx);
+  }
+
+  private void discardPending() {
+    holding = null;
+    passing = false;
+    requests.clear();
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    ClosedChannelException cause = new ClosedChannelException();
+    for (PendingResponse response : pending.values()) {
+      for (PendingWrite write : response.writes) {
+        write.discard(cause);
+      }
+    }
+    pending.clear();
+  }
+
+  private static class SequencedRequest {
+
+    private final HttpHeaders headers;
+    private final int sequence;
+
+    SequencedRequest(HttpHeaders headers, int sequence) {
+      this.headers = headers;
+      this.sequence = sequence;
+    }
+  }
+
+  private static class PendingResponse {
+
+    private final List<PendingWrite> writes = new ArrayList<>(2);
+    private boolean complete;
+
+    void add(Object msg, ChannelPromise promise) {
+      writes.add(new PendingWrite(msg, promise));
+      complete = isLast(msg);
+    }
+  }
+
+  private static class PendingWrite {
+
+    private final Object msg;
+    private final ChannelPromise promise;
+
+    PendingWrite(Object msg, ChannelPromise promise) {
+      this.msg = msg;
+      this.promise = promise;
+    }
+
+    void discard(Throwable cause) {
+      try {
+        if (msg instanceof ChunkedInput) {
+          ((ChunkedInput<?>) msg).close();
+        } else {
+          ReferenceCountUtil.release(msg);
+        }
+      } catch (Exception e) {
+        LOGGER.warn(e.getMessage(), e);
+      }
+      promise.tryFailure(cause);
+    }
+  }
+}
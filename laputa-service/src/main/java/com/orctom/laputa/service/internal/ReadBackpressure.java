@@ -0,0 +1,31 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Stops reading from a connection while its outbound buffer is over the high water mark
+ * (a slow client not keeping up with the responses), resumes once it drained below the low one.
+ * No new requests get decoded meanwhile, so nothing more piles up for that client.
+ */
+class ReadBackpressure extends ChannelDuplexHandler {
+
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    updateAutoRead(ctx);
+    super.channelWritabilityChanged(ctx);
+  }
+
+  protected boolean canRead(ChannelHandlerContext ctx) {
+    return ctx.channel().isWritable();
+  }
+
+  protected void updateAutoRead(ChannelHandlerContext ctx) {
+    ChannelConfig config = ctx.channel().config();
+    boolean canRead = canRead(ctx);
+    if (canRead != config.isAutoRead()) {
+      config.setAutoRead(canRead);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.util.HttpStreams;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.util.CharsetUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.netty.handler.codec.http.HttpHeaderNames.CONNECTION;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpHeaderValues.KEEP_ALIVE;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * Cheap responses for requests turned away before they got decoded.
+ * They go through the http codec like any other response, only the pre-encoded body bytes are shared.
+ */
+final class RejectedResponses {
+
+  private static final Map<Integer, ByteBuf> BODIES = new ConcurrentHashMap<>();
+
+  private RejectedResponses() {
+  }
+
+  static void reject(ChannelHandlerContext ctx, HttpRequest req, HttpResponseStatus status) {
+    ByteBuf body = BODIES.computeIfAbsent(status.code(), code -> Unpooled.unreleasableBuffer(
+        Unpooled.copiedBuffer(status.reasonPhrase(), CharsetUtil.US_ASCII)
+    ));
+
+    FullHttpResponse res = new DefaultFullHttpResponse(HTTP_1_1, status, body.duplicate());
+    res.headers().set(CONTENT_TYPE, "text/plain");
+    res.headers().setInt(CONTENT_LENGTH, body.readableBytes());
+    HttpStreams.copyStreamId(ctx, req, res);
+
+    if (HttpUtil.isKeepAlive(req)) {
+      res.headers().set(CONNECTION, KEEP_ALIVE);
+      ctx.write(res);
+    } else {
+      ctx.writeAndFlush(res).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+}
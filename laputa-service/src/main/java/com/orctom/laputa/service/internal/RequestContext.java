@@ -0,0 +1,91 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.model.RequestWrapper;
+import com.orctom.laputa.service.model.ResponseWrapper;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+
+/**
+ * Everything about one request while it travels between the I/O thread, workers and async callbacks
+ */
+class RequestContext {
+
+  private final ChannelHandlerContext ctx;
+  private final FullHttpRequest req;
+  private final RequestWrapper requestWrapper;
+  private final ResponseWrapper responseWrapper;
+  private final long start = System.currentTimeMillis();
+  private final long startNanos = System.nanoTime();
+
+  private boolean detached;
+  private boolean limited;
+
+  RequestContext(ChannelHandlerContext ctx,
+                 FullHttpRequest req,
+                 RequestWrapper requestWrapper,
+                 ResponseWrapper responseWrapper) {
+    this.ctx = ctx;
+    this.req = req;
+    this.requestWrapper = requestWrapper;
+    this.responseWrapper = responseWrapper;
+  }
+
+  ChannelHandlerContext getCtx() {
+    return ctx;
+  }
+
+  FullHttpRequest getReq() {
+    return req;
+  }
+
+  RequestWrapper getRequestWrapper() {
+    return requestWrapper;
+  }
+
+  ResponseWrapper getResponseWrapper() {
+    return responseWrapper;
+  }
+
+  long getStart() {
+    return start;
+  }
+
+  long getStartNanos() {
+    return startNanos;
+  }
+
+  /**
+   * Holding a slot of {@link ConcurrencyGate}, to be given back once the content got translated
+   */
+  void markLimited() {
+    limited = true;
+  }
+
+  boolean isLimited() {
+    return limited;
+  }
+
+  /**
+   * The response is going to be written after `channelRead` returns,
+   * holding the request till then as it is released by {@link LaputaServerHandler}.
+   */
+  void detach() {
+    if (detached) {
+      return;
+    }
+    req.retain();
+    detached = true;
+  }
+
+  boolean isDetached() {
+    return detached;
+  }
+
+  void release() {
+    if (!detached) {
+      return;
+    }
+    req.release();
+    detached = false;
+  }
+}
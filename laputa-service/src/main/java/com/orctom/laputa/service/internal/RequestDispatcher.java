@@ -0,0 +1,146 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.utils.SimpleMetrics;
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.orctom.laputa.service.Constants.*;
+
+/**
+ * Hands requests over to the configured {@link DispatchMode}
+ */
+class RequestDispatcher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RequestDispatcher.class);
+
+  private static final String GAUGE_EXECUTOR_QUEUE = "executor.queue";
+  private static final String GAUGE_EXECUTOR_ACTIVE = "executor.active";
+  private static final String GAUGE_VIRTUAL_IN_FLIGHT = "executor.virtual.inFlight";
+
+  private static final String METHOD_NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = "newVirtualThreadPerTaskExecutor";
+
+  private DispatchMode mode;
+  private ExecutorService executor;
+
+  private int maxInFlight;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  RequestDispatcher(Config config) {
+    mode = DispatchMode.of(config.getString(CFG_SERVER_DISPATCH));
+    if (DispatchMode.VIRTUAL == mode) {
+      executor = createVirtualThreadExecutor();
+      if (null == executor) {
+        LOGGER.warn("Virtual threads are not supported by Java {}, falling back to `{}`.",
+            System.getProperty("java.version"), DispatchMode.EXECUTOR.getKey());
+        mode = DispatchMode.EXECUTOR;
+      } else {
+        maxInFlight = config.getInt(CFG_SERVER_EXECUTOR_VIRTUAL_MAX_IN_FLIGHT);
+      }
+    }
+
+    if (DispatchMode.EXECUTOR == mode) {
+      executor = createExecutor(config);
+    }
+    LOGGER.info("Dispatching requests to: {}", mode.getKey());
+  }
+
+  private ExecutorService createExecutor(Config config) {
+    int threads = config.getInt(CFG_SERVER_EXECUTOR_THREADS);
+    if (threads <= 0) {
+      threads = 2 * Runtime.getRuntime().availableProcessors();
+    }
+    int queueSize = config.getInt(CFG_SERVER_EXECUTOR_QUEUE);
+    LOGGER.info("Request executor, threads: {}, queue: {}", threads, queueSize);
+
+    return new ThreadPoolExecutor(
+        threads,
+        threads,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        new LaputaThreadFactory("laputa-worker"),
+        new ThreadPoolExecutor.AbortPolicy()
+    );
+  }
+
+  /**
+   * Looked up reflectively as we are still compiled against Java 8
+   */
+  private ExecutorService createVirtualThreadExecutor() {
+    try {
+      Method factory = Executors.class.getMethod(METHOD_NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR);
+      return (ExecutorService) factory.invoke(null);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  void registerGauges(SimpleMetrics metrics) {
+    if (executor instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+      metrics.gauge(GAUGE_EXECUTOR_QUEUE, () -> String.valueOf(pool.getQueue().size()));
+      metrics.gauge(GAUGE_EXECUTOR_ACTIVE, () -> String.valueOf(pool.getActiveCount()));
+
+    } else if (DispatchMode.VIRTUAL == mode) {
+      metrics.gauge(GAUGE_VIRTUAL_IN_FLIGHT, () -> String.valueOf(inFlight.get()));
+    }
+  }
+
+  DispatchMode getMode() {
+    return mode;
+  }
+
+  /**
+   * Whether the request should be processed on the current I/O thread
+   */
+  boolean isInline() {
+    return DispatchMode.EVENT_LOOP == mode;
+  }
+
+  /**
+   * @throws RejectedExecutionException if the queue is full, or too many virtual threads are in flight
+   */
+  void dispatch(Runnable task) {
+    if (DispatchMode.VIRTUAL != mode) {
+      executor.execute(task);
+      return;
+    }
+
+    if (inFlight.incrementAndGet() > maxInFlight) {
+      inFlight.decrementAndGet();
+      throw new RejectedExecutionException("Too many requests in flight: " + maxInFlight);
+    }
+
+    try {
+      executor.execute(() -> {
+        try {
+          task.run();
+        } finally {
+          inFlight.decrementAndGet();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      inFlight.decrementAndGet();
+      throw e;
+    }
+  }
+
+  /**
+   * Called once the requests in flight are done, or the shutdown timed out waiting for them
+   */
+  void shutdown() {
+    if (null != executor) {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.exception.IllegalConfigException;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The I/O backing the event loops, native ones fall back to the next one down
+ * when the OS or the native library does not support them: epoll -> nio.
+ */
+enum Transport {
+
+  NIO("nio") {
+    @Override
+    boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(int threads) {
+      return new NioEventLoopGroup(threads);
+    }
+
+    @Override
+    Class<? extends ServerSocketChannel> getServerChannelClass() {
+      return NioServerSocketChannel.class;
+    }
+
+    @Override
+    void setIoRatio(EventLoopGroup group, int ioRatio) {
+      ((NioEventLoopGroup) group).setIoRatio(ioRatio);
+    }
+  },
+
+  /**
+   * Linux only, needs `netty-transport-native-epoll`
+   */
+  EPOLL("epoll") {
+    @Override
+    boolean isAvailable() {
+      return Epoll.isAvailable();
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(int threads) {
+      return new EpollEventLoopGroup(threads);
+    }
+
+    @Override
+    Class<? extends ServerSocketChannel> getServerChannelClass() {
+      return EpollServerSocketChannel.class;
+    }
+
+    @Override
+    ChannelOption<Boolean> getReusePortOption() {
+      return EpollChannelOption.SO_REUSEPORT;
+    }
+
+    @Override
+    void setIoRatio(EventLoopGroup group, int ioRatio) {
+      ((EpollEventLoopGroup) group).setIoRatio(ioRatio);
+    }
+  };
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Transport.class);
+
+  private String key;
+
+  Transport(String key) {
+    this.key = key;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  abstract boolean isAvailable();
+
+  /**
+   * @param threads 0 for netty's default, 2 * available processors
+   */
+  abstract EventLoopGroup newEventLoopGroup(int threads);
+
+  abstract Class<? extends ServerSocketChannel> getServerChannelClass();
+
+  /**
+   * Percentage of time spent on I/O rather than on tasks
+   */
+  abstract void setIoRatio(EventLoopGroup group, int ioRatio);
+
+  /**
+   * @return null if the transport can not bind several listeners to the same port
+   */
+  ChannelOption<Boolean> getReusePortOption() {
+    return null;
+  }
+
+  /**
+   * @return the configured one, or the next available one down
+   */
+  static Transport of(String key) {
+    Transport configured = null;
+    for (Transport transport : values()) {
+      if (transport.key.equalsIgnoreCase(key)) {
+        configured = transport;
+      }
+    }
+    if (null == configured) {
+      throw new IllegalConfigException("Unknown transport: " + key);
+    }
+
+    for (int i = configured.ordinal(); i > 0; i--) {
+      Transport transport = values()[i];
+      if (transport.isAvailable()) {
+        return transport;
+      }
+      LOGGER.warn("Transport {} is not available, falling back to {}", transport.key, values()[i - 1].key);
+    }
+    return NIO;
+  }
+}
@@ -18,4 +18,13 @@ public enum HTTPMethod {
   public String getKey() {
     return key;
   }
+
+  public static HTTPMethod of(String key) {
+    for (HTTPMethod httpMethod : values()) {
+      if (httpMethod.key.equals(key)) {
+        return httpMethod;
+      }
+    }
+    throw new IllegalArgumentException("Unknown http method: " + key);
+  }
 }
@@ -24,7 +24,7 @@ public class ParamInfo {
     if (null != annotations && 0 != annotations.length) {
       this.annotations = new HashMap<>(annotations.length * 2);
       for (Annotation annotation : annotations) {
-        this.annotations.put(annotation.getClass(), annotation);
+        this.annotations.put(annotation.annotationType(), annotation);
       }
     }
   }
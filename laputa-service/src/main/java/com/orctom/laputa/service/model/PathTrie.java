@@ -1,62 +1,475 @@
 package com.orctom.laputa.service.model;
 
-import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Trie tree node
+ * Segment trie of the url mappings, compiled once all the mappings are added.<br/>
+ * A path is matched by scanning it once: the segments are looked up in place (hashed over the char range),
+ * path params are captured as offsets, no substrings or split arrays till the params are asked for.<br/>
+ * Segments of a mapping are either:
+ * <li>static, e.g. `products`</li>
+ * <li>a param with a static prefix and/or suffix, e.g. `say{sth}to`</li>
+ * <li>a param, e.g. `{id}`</li>
+ * tried in this order (the prefixed/suffixed ones with the longest static part first),
+ * falling back to the next one if the rest of the path does not match under the former.<br/>
+ * Each node knows at which depths below it there are mappings, the branches that can not match
+ * the number of segments left are not entered, so the backtracking stays within the segments of the path.<br/>
+ * The offsets are captured into a buffer of the matching thread, a match allocates nothing for the mappings
+ * without path params, and only the {@link RouteMatch} with the offsets of its params for the others.
  * Created by hao on 9/23/15.
  */
 public class PathTrie {
 
-  private RequestMapping handler;
+  private static final char SLASH = '/';
+  private static final char DOT = '.';
+  private static final char BRACE_LEFT = '{';
+  private static final char BRACE_RIGHT = '}';
+  private static final String INDEX = "index";
+  private static final int MAX_DEPTH = 63;
 
-  private Map<String, PathTrie> children = new HashMap<>();
+  private static final ThreadLocal<int[]> CAPTURES = ThreadLocal.withInitial(() -> new int[16]);
 
-  public PathTrie() {
+  /**
+   * The more static chars the more specific, then the longer prefix
+   */
+  private static final Comparator<Node> PRECEDENCE = Comparator
+      .comparingInt((Node node) -> -(node.prefix.length() + node.suffix.length()))
+      .thenComparingInt(node -> -node.prefix.length())
+      .thenComparing(node -> node.prefix + BRACE_LEFT + BRACE_RIGHT + node.suffix);
+
+  private final Node root = new Node();
+  private int maxParams;
+
+  /**
+   * @return the mapping replaced, if there was one for the same pattern and http method
+   */
+  public RequestMapping add(String uriPattern, HTTPMethod httpMethod, RequestMapping mapping) {
+    Node node = root;
+    int params = 0;
+    for (String segment : uriPattern.split("/")) {
+      if (segment.isEmpty()) {
+        continue;
+      }
+
+      int braceLeft = segment.indexOf(BRACE_LEFT);
+      if (braceLeft < 0) {
+        node = node.statics.computeIfAbsent(segment, k -> new Node());
+        continue;
+      }
+
+      int braceRight = segment.indexOf(BRACE_RIGHT, braceLeft);
+      if (braceRight < 0) {
+        throw new IllegalArgumentException("Unclosed '{' in @Path: " + uriPattern);
+      }
+      params++;
+
+      String prefix = segment.substring(0, braceLeft);
+      String suffix = segment.substring(braceRight + 1);
+      if (prefix.isEmpty() && suffix.isEmpty()) {
+        if (null == node.param) {
+          node.param = new Node();
+        }
+        node = node.param;
+      } else {
+        node = node.patterns.computeIfAbsent(prefix + BRACE_LEFT + BRACE_RIGHT + suffix, k -> new Node(prefix, suffix));
+      }
+    }
+
+    maxParams = Math.max(maxParams, params);
+    if (null == node.handlers) {
+      node.handlers = new EnumMap<>(HTTPMethod.class);
+    }
+    return node.handlers.put(httpMethod, mapping);
   }
 
-  public PathTrie(RequestMapping handler) {
-    this.handler = handler;
+  /**
+   * Freezes the mappings added into the lookup tables, to be called before {@link #match(String, HTTPMethod)}
+   */
+  public void compile() {
+    root.compile();
   }
 
-  public PathTrie(String uri,
-                  Object instance,
-                  Class<?> handlerClass,
-                  Method handlerMethod,
-                  String httpMethod,
-                  String redirectTo) {
-    this.handler = new RequestMapping(uri, instance, handlerClass, handlerMethod, httpMethod, redirectTo);
+  /**
+   * Trailing `.ext` of the path is ignored, so is a trailing slash, which falls back to its `index` mapping.
+   * @return null if no mappings found for the path and http method
+   */
+  public RouteMatch match(String path, HTTPMethod httpMethod) {
+    int end = path.length();
+    int lastSlash = path.lastIndexOf(SLASH);
+    int dot = path.lastIndexOf(DOT);
+    if (dot > 0 && dot > lastSlash) {
+      end = dot;
+    }
+    boolean endsWithSlash = end > 0 && SLASH == path.charAt(end - 1);
+
+    int segments = countSegments(path, end);
+    if (!root.accepts(segments, endsWithSlash)) {
+      return null;
+    }
+
+    int[] captures = 0 == maxParams ? null : getCaptures(maxParams << 1);
+    RouteMatch route = root.match(path, 0, end, segments, endsWithSlash, httpMethod, captures, 0);
+    if (null == route) {
+      return null;
+    }
+
+    RequestMapping mapping = route.getMapping();
+    int params = mapping.getPathParamNames().length;
+    if (0 == params) {
+      return route;
+    }
+    return new RouteMatch(mapping, path, Arrays.copyOf(captures, params << 1));
   }
 
-  public RequestMapping getHandler() {
-    return handler;
+  /**
+   * Reused by the matches on the same thread, the offsets of the branches backtracked from are just overwritten
+   */
+  private static int[] getCaptures(int length) {
+    int[] captures = CAPTURES.get();
+    if (captures.length < length) {
+      captures = new int[length];
+      CAPTURES.set(captures);
+    }
+    return captures;
   }
 
-  public Map<String, PathTrie> getChildren() {
-    return children;
+  private static int countSegments(String path, int end) {
+    int segments = 0;
+    boolean inSegment = false;
+    for (int i = 0; i < end; i++) {
+      if (SLASH == path.charAt(i)) {
+        inSegment = false;
+      } else if (!inSegment) {
+        inSegment = true;
+        segments++;
+      }
+    }
+    return segments;
   }
 
-  @Override
-  public String toString() {
-    return getChildren().keySet().toString();
+  /**
+   * Pairs of the mappings that can both match some paths, with the one taking precedence first,
+   * except the static segments over the params and the prefixed/suffixed params over the plain ones,
+   * which are how overlapping mappings are meant to be declared.
+   */
+  public List<String> getConflicts() {
+    List<String> conflicts = new ArrayList<>();
+    root.collectConflicts(conflicts);
+    return conflicts;
   }
 
   public List<RequestMapping> getChildrenMappings() {
-    return getChildrenMappings(this);
+    List<RequestMapping> mappings = new ArrayList<>();
+    root.collect(mappings);
+    return mappings;
   }
 
-  private List<RequestMapping> getChildrenMappings(PathTrie parent) {
-    List<RequestMapping> mappings = new ArrayList<>();
-    if (null != parent.getHandler()) {
-      mappings.add(parent.getHandler());
+  private static class Node {
+
+    private final String prefix;
+    private final String suffix;
+
+    private Map<String, Node> statics = new LinkedHashMap<>();
+    private Map<String, Node> patterns = new LinkedHashMap<>();
+    private Node param;
+    private EnumMap<HTTPMethod, RequestMapping> handlers;
+
+    /**
+     * Of {@link #handlers}, returned as they are for the mappings without path params
+     */
+    private EnumMap<HTTPMethod, RouteMatch> routes;
+
+    /**
+     * Open addressing table of {@link #statics}, hashed the same way as {@link String#hashCode()}
+     */
+    private String[] staticKeys;
+    private Node[] staticNodes;
+    private int mask;
+    private Node[] patternNodes;
+
+    /**
+     * Bit `n` is set if there are mappings `n` segments below, the last bit for {@link #MAX_DEPTH} or deeper
+     */
+    private long depths;
+
+    private Node() {
+      this("", "");
     }
-    for (Map.Entry<String, PathTrie> entry : parent.getChildren().entrySet()) {
-      mappings.addAll(getChildrenMappings(entry.getValue()));
+
+    private Node(String prefix, String suffix) {
+      this.prefix = prefix;
+      this.suffix = suffix;
+    }
+
+    private void compile() {
+      int size = 2;
+      while (size < statics.size() << 1) {
+        size <<= 1;
+      }
+      mask = size - 1;
+      staticKeys = new String[size];
+      staticNodes = new Node[size];
+      for (Map.Entry<String, Node> entry : statics.entrySet()) {
+        int i = spread(entry.getKey().hashCode()) & mask;
+        while (null != staticKeys[i]) {
+          i = (i + 1) & mask;
+        }
+        staticKeys[i] = entry.getKey();
+        staticNodes[i] = entry.getValue();
+      }
+
+      patternNodes = patterns.values().toArray(new Node[patterns.size()]);
+      Arrays.sort(patternNodes, PRECEDENCE);
+
+      if (null != handlers) {
+        routes = new EnumMap<>(HTTPMethod.class);
+        handlers.forEach((httpMethod, mapping) -> routes.put(httpMethod, new RouteMatch(mapping)));
+      }
+
+      depths = null == handlers || handlers.isEmpty() ? 0L : 1L;
+      for (Node child : statics.values()) {
+        child.compile();
+        depths |= deeper(child.depths);
+      }
+      for (Node child : patternNodes) {
+        child.compile();
+        depths |= deeper(child.depths);
+      }
+      if (null != param) {
+        param.compile();
+        depths |= deeper(param.depths);
+      }
+    }
+
+    private static long deeper(long depths) {
+      long deeper = depths << 1;
+      if (0L != (depths & (3L << (MAX_DEPTH - 1)))) {
+        deeper |= 1L << MAX_DEPTH;
+      }
+      return deeper;
+    }
+
+    /**
+     * @param segments left in the path, a trailing slash could add an `index`
+     */
+    private boolean accepts(int segments, boolean endsWithSlash) {
+      return 0L != (depths & (1L << Math.min(segments, MAX_DEPTH))) ||
+          endsWithSlash && 0L != (depths & (1L << Math.min(segments + 1, MAX_DEPTH)));
+    }
+
+    private static int spread(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+
+    private Node getStatic(String path, int start, int end) {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + path.charAt(i);
+      }
+
+      int len = end - start;
+      int i = spread(hash) & mask;
+      String key;
+      while (null != (key = staticKeys[i])) {
+        if (key.length() == len && path.regionMatches(start, key, 0, len)) {
+          return staticNodes[i];
+        }
+        i = (i + 1) & mask;
+      }
+      return null;
+    }
+
+    private RouteMatch match(String path,
+                             int from,
+                             int end,
+                             int segments,
+                             boolean endsWithSlash,
+                             HTTPMethod httpMethod,
+                             int[] captures,
+                             int params) {
+      int start = from;
+      while (start < end && SLASH == path.charAt(start)) {
+        start++;
+      }
+      if (start >= end) {
+        return getHandler(endsWithSlash, httpMethod);
+      }
+
+      int segmentEnd = path.indexOf(SLASH, start);
+      if (segmentEnd < 0 || segmentEnd > end) {
+        segmentEnd = end;
+      }
+
+      int left = segments - 1;
+      Node child = getStatic(path, start, segmentEnd);
+      if (null != child && child.accepts(left, endsWithSlash)) {
+        RouteMatch route = child.match(path, segmentEnd, end, left, endsWithSlash, httpMethod, captures, params);
+        if (null != route) {
+          return route;
+        }
+      }
+
+      int segmentLength = segmentEnd - start;
+      for (Node pattern : patternNodes) {
+        int prefixLength = pattern.prefix.length();
+        int suffixLength = pattern.suffix.length();
+        if (segmentLength <= prefixLength + suffixLength ||
+            !pattern.accepts(left, endsWithSlash) ||
+            !path.regionMatches(start, pattern.prefix, 0, prefixLength) ||
+            !path.regionMatches(segmentEnd - suffixLength, pattern.suffix, 0, suffixLength)) {
+          continue;
+        }
+
+        captures[params << 1] = start + prefixLength;
+        captures[(params << 1) + 1] = segmentEnd - suffixLength;
+        RouteMatch route = pattern.match(path, segmentEnd, end, left, endsWithSlash, httpMethod, captures, params + 1);
+        if (null != route) {
+          return route;
+        }
+      }
+
+      if (null != param && param.accepts(left, endsWithSlash)) {
+        captures[params << 1] = start;
+        captures[(params << 1) + 1] = segmentEnd;
+        return param.match(path, segmentEnd, end, left, endsWithSlash, httpMethod, captures, params + 1);
+      }
+
+      return null;
+    }
+
+    private RouteMatch getHandler(boolean endsWithSlash, HTTPMethod httpMethod) {
+      if (null != routes) {
+        RouteMatch route = routes.get(httpMethod);
+        if (null != route) {
+          return route;
+        }
+      }
+
+      if (endsWithSlash) {
+        Node index = statics.get(INDEX);
+        if (null != index && null != index.routes) {
+          return index.routes.get(httpMethod);
+        }
+      }
+      return null;
+    }
+
+    private void collect(Collection<RequestMapping> mappings) {
+      if (null != handlers) {
+        mappings.addAll(handlers.values());
+      }
+      statics.values().forEach(child -> child.collect(mappings));
+      patterns.values().forEach(child -> child.collect(mappings));
+      if (null != param) {
+        param.collect(mappings);
+      }
+    }
+
+    private void collectConflicts(List<String> conflicts) {
+      for (int i = 0; i < patternNodes.length; i++) {
+        for (int j = i + 1; j < patternNodes.length; j++) {
+          collectConflicts(conflicts, patternNodes[i], patternNodes[j]);
+        }
+      }
+
+      statics.values().forEach(child -> child.collectConflicts(conflicts));
+      for (Node child : patternNodes) {
+        child.collectConflicts(conflicts);
+      }
+      if (null != param) {
+        param.collectConflicts(conflicts);
+      }
+    }
+
+    /**
+     * Both match some segments, e.g. `{id}.json` and `item{id}`,
+     * the mappings under them shadow each other when they also match the rest of the paths
+     */
+    private static void collectConflicts(List<String> conflicts, Node first, Node second) {
+      if (first.prefix.startsWith(second.prefix) || second.prefix.startsWith(first.prefix)) {
+        if (first.suffix.endsWith(second.suffix) || second.suffix.endsWith(first.suffix)) {
+          List<RequestMapping> shadowing = new ArrayList<>();
+          List<RequestMapping> shadowed = new ArrayList<>();
+          first.collect(shadowing);
+          second.collect(shadowed);
+          for (RequestMapping a : shadowing) {
+            for (RequestMapping b : shadowed) {
+              if (a.getHttpMethod().equals(b.getHttpMethod()) && overlaps(a.getUriPattern(), b.getUriPattern())) {
+                conflicts.add(a + "\n\t\tshadows " + b);
+              }
+            }
+          }
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return statics.keySet().toString() + patterns.keySet().toString();
+    }
+  }
+
+  /**
+   * Same number of segments, each pair of them can match the same value
+   */
+  private static boolean overlaps(String first, String second) {
+    String[] a = trimLeadingSlash(first).split("/");
+    String[] b = trimLeadingSlash(second).split("/");
+    if (a.length != b.length) {
+      return false;
+    }
+    for (int i = 0; i < a.length; i++) {
+      if (!overlaps(Segment.of(a[i]), Segment.of(b[i]))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean overlaps(Segment a, Segment b) {
+    if (!a.param && !b.param) {
+      return a.prefix.equals(b.prefix);
+    }
+    if (!a.param || !b.param) {
+      Segment pattern = a.param ? a : b;
+      String value = a.param ? b.prefix : a.prefix;
+      return value.length() > pattern.prefix.length() + pattern.suffix.length() &&
+          value.startsWith(pattern.prefix) &&
+          value.endsWith(pattern.suffix);
+    }
+    return (a.prefix.startsWith(b.prefix) || b.prefix.startsWith(a.prefix)) &&
+        (a.suffix.endsWith(b.suffix) || b.suffix.endsWith(a.suffix));
+  }
+
+  private static String trimLeadingSlash(String uriPattern) {
+    return uriPattern.startsWith("/") ? uriPattern.substring(1) : uriPattern;
+  }
+
+  private static class Segment {
+
+    private final boolean param;
+    private final String prefix;
+    private final String suffix;
+
+    private Segment(boolean param, String prefix, String suffix) {
+      this.param = param;
+      this.prefix = prefix;
+      this.suffix = suffix;
+    }
+
+    private static Segment of(String segment) {
+      int braceLeft = segment.indexOf(BRACE_LEFT);
+      if (braceLeft < 0) {
+        return new Segment(false, segment, "");
+      }
+      return new Segment(true, segment.substring(0, braceLeft), segment.substring(segment.indexOf(BRACE_RIGHT) + 1));
     }
-    return mappings;
   }
 }
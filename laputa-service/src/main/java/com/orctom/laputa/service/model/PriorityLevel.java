@@ -0,0 +1,24 @@
+package com.orctom.laputa.service.model;
+
+/**
+ * Lanes of requests, the lower ones are shed first when the server is overloaded
+ */
+public enum PriorityLevel {
+
+  /**
+   * Never shed, such as health checks
+   */
+  CRITICAL,
+
+  HIGH,
+
+  /**
+   * Routes not prioritized, the anonymous requests of them are shed before the authenticated ones
+   */
+  NORMAL,
+
+  /**
+   * Such as static assets
+   */
+  LOW
+}
@@ -1,14 +1,18 @@
 package com.orctom.laputa.service.model;
 
 import com.orctom.laputa.service.annotation.Data;
+import com.orctom.laputa.service.util.ArgsBinder;
+import com.orctom.laputa.utils.TokenBucket;
 import org.springframework.cglib.reflect.FastClass;
 import org.springframework.cglib.reflect.FastMethod;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.orctom.laputa.service.util.ParamResolver.getDefaultValue;
@@ -19,10 +23,17 @@ public class RequestMapping {
   private String uriPattern;
   private Object target;
   private FastMethod handlerMethod;
+  private String[] pathParamNames;
   private Map<String, ParamInfo> handlerParameters = Collections.emptyMap();
+  private ArgsBinder argsBinder;
   private Class<?> dataType;
   private String httpMethod;
   private String redirectTo;
+  private String throttleGroup;
+  private double throttlePermitsPerSecond;
+  private TokenBucket throttle;
+  private int throttleCost = 1;
+  private PriorityLevel priority = PriorityLevel.NORMAL;
 
   public RequestMapping(String uriPattern,
                         Object target,
@@ -35,9 +46,28 @@ public class RequestMapping {
     this.handlerMethod = FastClass.create(handlerClass).getMethod(handlerMethod);
     this.httpMethod = httpMethod;
     this.redirectTo = redirectTo;
+    this.pathParamNames = getPathParamNames(uriPattern);
     init(handlerMethod);
   }
 
+  /**
+   * In the order they appear in the pattern, same as the params captured by {@link PathTrie}
+   */
+  private static String[] getPathParamNames(String uriPattern) {
+    List<String> names = new ArrayList<>();
+    for (String segment : uriPattern.split("/")) {
+      int braceLeft = segment.indexOf('{');
+      if (braceLeft < 0) {
+        continue;
+      }
+      int braceRight = segment.indexOf('}', braceLeft);
+      if (braceRight > braceLeft) {
+        names.add(segment.substring(braceLeft + 1, braceRight));
+      }
+    }
+    return names.toArray(new String[names.size()]);
+  }
+
   private void init(Method handlerMethod) {
     Parameter[] parameters = handlerMethod.getParameters();
     int paramLength = parameters.length;
@@ -67,6 +97,9 @@ public class RequestMapping {
     }
 
     handlerParameters = Collections.unmodifiableMap(_handlerParameters);
+    if (null == dataType) {
+      argsBinder = ArgsBinder.create(handlerMethod);
+    }
   }
 
   public String getUriPattern() {
@@ -81,10 +114,21 @@ public class RequestMapping {
     return handlerMethod;
   }
 
+  public String[] getPathParamNames() {
+    return pathParamNames;
+  }
+
   public Map<String, ParamInfo> getHandlerParameters() {
     return handlerParameters;
   }
 
+  /**
+   * @return null if the args are not all simple, to be resolved by {@link com.orctom.laputa.service.util.ArgsResolver}
+   */
+  public ArgsBinder getArgsBinder() {
+    return argsBinder;
+  }
+
   public Class<?> getDataType() {
     return dataType;
   }
@@ -97,6 +141,46 @@ public class RequestMapping {
     return redirectTo;
   }
 
+  /**
+   * The bucket is set on publishing, shared by the routes of the same group
+   */
+  public void setThrottle(String group, double permitsPerSecond, int cost) {
+    this.throttleGroup = group;
+    this.throttlePermitsPerSecond = permitsPerSecond;
+    this.throttleCost = cost;
+  }
+
+  public String getThrottleGroup() {
+    return throttleGroup;
+  }
+
+  public double getThrottlePermitsPerSecond() {
+    return throttlePermitsPerSecond;
+  }
+
+  public int getThrottleCost() {
+    return throttleCost;
+  }
+
+  public void setThrottleBucket(TokenBucket throttle) {
+    this.throttle = throttle;
+  }
+
+  /**
+   * @return false if over the {@link com.orctom.laputa.service.annotation.Throttle} of this route
+   */
+  public boolean tryAcquire() {
+    return null == throttle || throttle.tryAcquire(throttleCost);
+  }
+
+  public PriorityLevel getPriority() {
+    return priority;
+  }
+
+  public void setPriority(PriorityLevel priority) {
+    this.priority = priority;
+  }
+
   @Override
   public String toString() {
     return uriPattern + " " + httpMethod + " -> " + handlerMethod.getJavaMethod().toGenericString();
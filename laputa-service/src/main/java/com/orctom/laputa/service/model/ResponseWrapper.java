@@ -1,6 +1,8 @@
 package com.orctom.laputa.service.model;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.stream.ChunkedInput;
 
 import java.io.File;
 import java.util.Map;
@@ -17,6 +19,8 @@ public class ResponseWrapper {
   private String mediaType;
   private Object result;
   private byte[] content;
+  private ByteBuf contentBuffer;
+  private ChunkedInput<ByteBuf> chunkedContent;
   private String template;
   private File file;
   private HttpResponseStatus status = OK;
@@ -51,6 +55,26 @@ public class ResponseWrapper {
     this.content = content;
   }
 
+  /**
+   * Translated content in a buffer of the channel's allocator, takes precedence over {@link #getContent()}.
+   * The write of the response takes over the ownership.
+   */
+  public ByteBuf getContentBuffer() {
+    return contentBuffer;
+  }
+
+  public void setContentBuffer(ByteBuf contentBuffer) {
+    this.contentBuffer = contentBuffer;
+  }
+
+  public ChunkedInput<ByteBuf> getChunkedContent() {
+    return chunkedContent;
+  }
+
+  public void setChunkedContent(ChunkedInput<ByteBuf> chunkedContent) {
+    this.chunkedContent = chunkedContent;
+  }
+
   public String getTemplate() {
     return template;
   }
@@ -121,6 +145,6 @@ public class ResponseWrapper {
   }
 
   public boolean hasContent() {
-    return null != result || OK != status || null != messenger.getRedirectTo() || null != content || null != file;
+    return null != result || OK != status || null != messenger.getRedirectTo() || null != content || null != contentBuffer || null != chunkedContent || null != file;
   }
 }
@@ -0,0 +1,58 @@
+package com.orctom.laputa.service.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The mapping matched for a path, with the path params captured as offsets in the path,
+ * only turned into strings when first asked for, kept for the cached ones.
+ * The ones of the mappings without path params are created once and shared by all their matches.
+ */
+public class RouteMatch {
+
+  private final RequestMapping mapping;
+  private final String path;
+  private final int[] captures;
+  private volatile Map<String, String> pathParams;
+
+  public RouteMatch(RequestMapping mapping) {
+    this(mapping, null, null);
+  }
+
+  public RouteMatch(RequestMapping mapping, String path, int[] captures) {
+    this.mapping = mapping;
+    this.path = path;
+    this.captures = captures;
+  }
+
+  public RequestMapping getMapping() {
+    return mapping;
+  }
+
+  public boolean hasPathParams() {
+    return null != captures && mapping.getPathParamNames().length > 0;
+  }
+
+  public Map<String, String> getPathParams() {
+    Map<String, String> params = pathParams;
+    if (null == params) {
+      params = extractPathParams();
+      pathParams = params;
+    }
+    return params;
+  }
+
+  private Map<String, String> extractPathParams() {
+    if (!hasPathParams()) {
+      return Collections.emptyMap();
+    }
+
+    String[] names = mapping.getPathParamNames();
+    Map<String, String> params = new HashMap<>(names.length << 1);
+    for (int i = 0; i < names.length; i++) {
+      params.put(names[i], path.substring(captures[i << 1], captures[(i << 1) + 1]));
+    }
+    return Collections.unmodifiableMap(params);
+  }
+}
@@ -1,5 +1,6 @@
 package com.orctom.laputa.service.processor;
 
+import com.orctom.laputa.service.model.PriorityLevel;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
 
@@ -15,4 +16,13 @@ public interface RequestProcessor {
 
   void handleRequest(final RequestWrapper requestWrapper, final ResponseWrapper responseWrapper);
 
+  /**
+   * Asked only while shedding load, before the request gets decoded
+   *
+   * @return null if `path` is not served by this processor
+   */
+  default PriorityLevel getPriority(String path) {
+    return null;
+  }
+
 }
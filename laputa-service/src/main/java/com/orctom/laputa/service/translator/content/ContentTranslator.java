@@ -3,6 +3,9 @@ package com.orctom.laputa.service.translator.content;
 import com.orctom.laputa.service.config.Configurator;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -18,14 +21,42 @@ public interface ContentTranslator {
 
   String getExtension();
 
-  byte[] translate(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) throws IOException;
+  /**
+   * Implement either this one or {@link #translate(RequestWrapper, ResponseWrapper, ByteBuf)}
+   */
+  default byte[] translate(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) throws IOException {
+    ByteBuf buffer = Unpooled.buffer();
+    try {
+      translate(requestWrapper, responseWrapper, buffer);
+      return ByteBufUtil.getBytes(buffer);
+    } finally {
+      buffer.release();
+    }
+  }
+
+  /**
+   * Writes straight into a pooled buffer of the channel's allocator, skipping the intermediate byte arrays.
+   * The buffer is released by the caller on failures.
+   */
+  default void translate(RequestWrapper requestWrapper,
+                         ResponseWrapper responseWrapper,
+                         ByteBuf buffer) throws IOException {
+    buffer.writeBytes(translate(requestWrapper, responseWrapper));
+  }
+
+  /**
+   * @return null if streamed results are not supported, they get collected into a list and translated as a whole
+   */
+  default StreamContentEncoder getStreamEncoder() {
+    return null;
+  }
 
   default byte[] toBytes(String string) {
+    return string.getBytes(getCharset());
+  }
+
+  default Charset getCharset() {
     Charset charset = Configurator.getInstance().getCharset();
-    if (null != charset) {
-      return string.getBytes(charset);
-    } else {
-      return string.getBytes();
-    }
+    return null != charset ? charset : Charset.defaultCharset();
   }
 }
@@ -4,6 +4,8 @@ import com.alibaba.fastjson.JSON;
 import com.orctom.laputa.service.model.MediaType;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 
 import java.io.IOException;
 
@@ -15,6 +17,28 @@ class JsonContentTranslator implements ContentTranslator {
 
   static final MediaType TYPE = MediaType.APPLICATION_JSON;
 
+  private static final byte[] ARRAY_BEGIN = {'['};
+  private static final byte[] ARRAY_END = {']'};
+  private static final String SEPARATOR = ",";
+
+  private final StreamContentEncoder streamEncoder = new StreamContentEncoder() {
+    @Override
+    public byte[] begin() {
+      return ARRAY_BEGIN;
+    }
+
+    @Override
+    public byte[] encode(Object element, boolean first) throws IOException {
+      String json = JSON.toJSONString(element);
+      return toBytes(first ? json : SEPARATOR + json);
+    }
+
+    @Override
+    public byte[] end() {
+      return ARRAY_END;
+    }
+  };
+
   @Override
   public String getMediaType() {
     return TYPE.getValue();
@@ -26,7 +50,14 @@ class JsonContentTranslator implements ContentTranslator {
   }
 
   @Override
-  public byte[] translate(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) throws IOException {
-    return toBytes(JSON.toJSONString(responseWrapper.getResult()));
+  public void translate(RequestWrapper requestWrapper,
+                        ResponseWrapper responseWrapper,
+                        ByteBuf buffer) throws IOException {
+    JSON.writeJSONString(new ByteBufOutputStream(buffer), getCharset(), responseWrapper.getResult());
+  }
+
+  @Override
+  public StreamContentEncoder getStreamEncoder() {
+    return streamEncoder;
   }
 }
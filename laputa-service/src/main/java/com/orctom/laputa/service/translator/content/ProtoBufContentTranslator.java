@@ -6,11 +6,14 @@ import com.google.common.cache.LoadingCache;
 import com.orctom.laputa.service.model.MediaType;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.protostuff.GraphIOUtil;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.concurrent.ExecutionException;
 
@@ -31,6 +34,15 @@ class ProtoBufContentTranslator implements ContentTranslator {
         }
       });
 
+  @SuppressWarnings("unchecked")
+  private final StreamContentEncoder streamEncoder = (element, first) -> {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GraphIOUtil.writeDelimitedTo(
+        out, element, getSchema(element.getClass()), LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE)
+    );
+    return out.toByteArray();
+  };
+
   @Override
   public String getMediaType() {
     return TYPE.getValue();
@@ -43,14 +55,29 @@ class ProtoBufContentTranslator implements ContentTranslator {
 
   @Override
   @SuppressWarnings("unchecked")
-  public byte[] translate(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) throws IOException {
+  public void translate(RequestWrapper requestWrapper,
+                        ResponseWrapper responseWrapper,
+                        ByteBuf buffer) throws IOException {
     Object result = responseWrapper.getResult();
-    Schema schema;
+    Schema schema = getSchema(result.getClass());
+    GraphIOUtil.writeTo(
+        new ByteBufOutputStream(buffer), result, schema, LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE)
+    );
+  }
+
+  private Schema getSchema(Class<?> clazz) {
     try {
-      schema = schemaCache.get(result.getClass());
+      return schemaCache.get(clazz);
     } catch (ExecutionException e) {
-      schema = RuntimeSchema.getSchema(result.getClass());
+      return RuntimeSchema.getSchema(clazz);
     }
-    return GraphIOUtil.toByteArray(result, schema, LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+  }
+
+  /**
+   * Length-delimited messages, one after another
+   */
+  @Override
+  public StreamContentEncoder getStreamEncoder() {
+    return streamEncoder;
   }
 }
@@ -0,0 +1,21 @@
+package com.orctom.laputa.service.translator.content;
+
+import java.io.IOException;
+
+/**
+ * Encodes a streamed result (an {@link java.util.Iterator} or a {@link java.util.stream.Stream}) element by element
+ */
+public interface StreamContentEncoder {
+
+  byte[] EMPTY = new byte[0];
+
+  default byte[] begin() {
+    return EMPTY;
+  }
+
+  byte[] encode(Object element, boolean first) throws IOException;
+
+  default byte[] end() {
+    return EMPTY;
+  }
+}
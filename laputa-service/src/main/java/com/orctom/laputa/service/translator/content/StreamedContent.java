@@ -0,0 +1,119 @@
+package com.orctom.laputa.service.translator.content;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Pulls and encodes the elements of a streamed result as the channel becomes writable,
+ * batching them into chunks of about {@link #CHUNK_SIZE} bytes.
+ * The elements are pulled on the I/O thread, so the iterator should not block.
+ */
+public class StreamedContent implements ChunkedInput<ByteBuf> {
+
+  private static final int CHUNK_SIZE = 8192;
+
+  private final Iterator<?> iterator;
+  private final AutoCloseable closeable;
+  private final StreamContentEncoder encoder;
+
+  private boolean begun;
+  private boolean first = true;
+  private boolean ended;
+  private long progress;
+
+  public StreamedContent(Object result, StreamContentEncoder encoder) {
+    if (result instanceof Stream) {
+      Stream<?> stream = (Stream<?>) result;
+      this.iterator = stream.iterator();
+      this.closeable = stream;
+    } else {
+      this.iterator = (Iterator<?>) result;
+      this.closeable = result instanceof AutoCloseable ? (AutoCloseable) result : null;
+    }
+    this.encoder = encoder;
+  }
+
+  public static boolean isStream(Object result) {
+    return result instanceof Iterator || result instanceof Stream;
+  }
+
+  /**
+   * For the translators can not encode element by element
+   */
+  public static List<Object> collect(Object result) {
+    List<Object> elements = new ArrayList<>();
+    if (result instanceof Stream) {
+      try (Stream<?> stream = (Stream<?>) result) {
+        stream.forEach(elements::add);
+      }
+    } else {
+      ((Iterator<?>) result).forEachRemaining(elements::add);
+    }
+    return elements;
+  }
+
+  @Override
+  public boolean isEndOfInput() {
+    return ended;
+  }
+
+  @Override
+  public void close() throws Exception {
+    if (null != closeable) {
+      closeable.close();
+    }
+  }
+
+  @Deprecated
+  @Override
+  public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+    return readChunk(ctx.alloc());
+  }
+
+  @Override
+  public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+    if (ended) {
+      return null;
+    }
+
+    ByteBuf chunk = allocator.buffer(CHUNK_SIZE);
+    try {
+      if (!begun) {
+        chunk.writeBytes(encoder.begin());
+        begun = true;
+      }
+      while (chunk.readableBytes() < CHUNK_SIZE && iterator.hasNext()) {
+        chunk.writeBytes(encoder.encode(iterator.next(), first));
+        first = false;
+      }
+
+      if (!iterator.hasNext()) {
+        chunk.writeBytes(encoder.end());
+        ended = true;
+      }
+    } catch (Exception e) {
+      chunk.release();
+      throw e;
+    }
+
+    progress += chunk.readableBytes();
+    return chunk;
+  }
+
+  @Override
+  public long length() {
+    return -1;
+  }
+
+  @Override
+  public long progress() {
+    return progress;
+  }
+}
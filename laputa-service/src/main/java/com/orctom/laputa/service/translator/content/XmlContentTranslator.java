@@ -4,8 +4,12 @@ import com.orctom.laputa.service.model.MediaType;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
 import com.thoughtworks.xstream.XStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 
 /**
  * Encode data to xml
@@ -17,6 +21,23 @@ class XmlContentTranslator implements ContentTranslator {
 
   private static XStream xstream = new XStream();
 
+  private final StreamContentEncoder streamEncoder = new StreamContentEncoder() {
+    @Override
+    public byte[] begin() {
+      return toBytes("<list>");
+    }
+
+    @Override
+    public byte[] encode(Object element, boolean first) throws IOException {
+      return toBytes(xstream.toXML(element));
+    }
+
+    @Override
+    public byte[] end() {
+      return toBytes("</list>");
+    }
+  };
+
   @Override
   public String getMediaType() {
     return TYPE.getValue();
@@ -28,7 +49,16 @@ class XmlContentTranslator implements ContentTranslator {
   }
 
   @Override
-  public byte[] translate(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) throws IOException {
-    return toBytes(xstream.toXML(responseWrapper.getResult()));
+  public void translate(RequestWrapper requestWrapper,
+                        ResponseWrapper responseWrapper,
+                        ByteBuf buffer) throws IOException {
+    Writer writer = new OutputStreamWriter(new ByteBufOutputStream(buffer), getCharset());
+    xstream.toXML(responseWrapper.getResult(), writer);
+    writer.flush();
+  }
+
+  @Override
+  public StreamContentEncoder getStreamEncoder() {
+    return streamEncoder;
   }
 }
@@ -2,6 +2,8 @@ package com.orctom.laputa.service.translator.response;
 
 import com.orctom.laputa.service.model.ResponseCookie;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.util.HttpStreams;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
@@ -9,9 +11,11 @@ import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
+import io.netty.handler.stream.ChunkedInput;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +34,14 @@ public abstract class AbstractResponseTranslator {
   protected static final String CONTENT_TYPE = ".contentType";
 
   protected FullHttpResponse createHttpResponse(ResponseWrapper responseWrapper) {
+    if (null != responseWrapper.getContentBuffer()) {
+      return new DefaultFullHttpResponse(
+          HTTP_1_1,
+          responseWrapper.getStatus(),
+          responseWrapper.getContentBuffer()
+      );
+    }
+
     if (null == responseWrapper.getContent()) {
       return new DefaultFullHttpResponse(HTTP_1_1, responseWrapper.getStatus());
     }
@@ -41,7 +53,22 @@ public abstract class AbstractResponseTranslator {
     );
   }
 
-  protected void setCookies(FullHttpResponse res, Set<ResponseCookie> cookies) {
+  /**
+   * For the translators not writing the streamed result out, the stream would stay open otherwise
+   */
+  protected void closeChunkedContent(ResponseWrapper responseWrapper) {
+    ChunkedInput<ByteBuf> chunkedContent = responseWrapper.getChunkedContent();
+    if (null == chunkedContent) {
+      return;
+    }
+    try {
+      chunkedContent.close();
+    } catch (Exception e) {
+      LOGGER.error(e.getMessage(), e);
+    }
+  }
+
+  protected void setCookies(HttpResponse res, Set<ResponseCookie> cookies) {
     if (null == cookies || cookies.isEmpty()) {
       return;
     }
@@ -59,6 +86,7 @@ public abstract class AbstractResponseTranslator {
                                FullHttpResponse res,
                                HttpResponseStatus status) {
     setDateHeader(req, res, status);
+    HttpStreams.copyStreamId(ctx, req, res);
     if (!HttpUtil.isContentLengthSet(res)) {
       HttpUtil.setContentLength(res, res.content().readableBytes());
     }
@@ -81,7 +109,7 @@ public abstract class AbstractResponseTranslator {
     res.headers().set(LAST_MODIFIED, date);
   }
 
-  protected void setNoCacheHeader(FullHttpResponse res) {
+  protected void setNoCacheHeader(HttpResponse res) {
     res.headers().set(CACHE_CONTROL, HEADER_CACHE_CONTROL_NO_CACHE);
     res.headers().set(EXPIRES, HEADER_EXPIRE_NOW);
   }
@@ -0,0 +1,69 @@
+package com.orctom.laputa.service.translator.response;
+
+import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.util.HttpStreams;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpChunkedInput;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.orctom.laputa.service.Constants.HTTP_DATE_FORMATTER;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONNECTION;
+import static io.netty.handler.codec.http.HttpHeaderNames.DATE;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * Writes streamed results as `Transfer-Encoding: chunked`,
+ * the chunks are pulled by the `ChunkedWriteHandler` only while the channel is writable.
+ * The connection is closed if the stream fails halfway, there is no other way to tell the client the body is cut off.
+ * On HTTP/2 the stream gets reset instead, the other streams of the connection go on.
+ */
+public class ChunkedResponseTranslator extends AbstractResponseTranslator implements ResponseTranslator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedResponseTranslator.class);
+
+  @Override
+  public boolean fits(ResponseWrapper responseWrapper) {
+    return null != responseWrapper.getChunkedContent();
+  }
+
+  @Override
+  public void translate(ChannelHandlerContext ctx, FullHttpRequest req, ResponseWrapper responseWrapper) {
+    HttpResponse res = new DefaultHttpResponse(HTTP_1_1, responseWrapper.getStatus());
+    res.headers().set(HttpHeaderNames.CONTENT_TYPE, responseWrapper.getMediaType());
+    res.headers().set(DATE, DateTime.now().toString(HTTP_DATE_FORMATTER));
+    setNoCacheHeader(res);
+    setCookies(res, responseWrapper.getCookies());
+    HttpUtil.setTransferEncodingChunked(res, true);
+    HttpStreams.copyStreamId(ctx, req, res);
+
+    boolean keepAlive = HttpUtil.isKeepAlive(req);
+    if (keepAlive) {
+      res.headers().set(CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+    }
+
+    ctx.write(res);
+    ChannelFuture lastContentFuture = ctx.writeAndFlush(new HttpChunkedInput(responseWrapper.getChunkedContent()));
+    String uri = req.uri();
+    lastContentFuture.addListener(future -> {
+      if (!future.isSuccess()) {
+        LOGGER.error("Failed to stream the response of: {}", uri, future.cause());
+      }
+    });
+    if (!HttpStreams.isHttp2(req)) {
+      lastContentFuture.addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+    if (!keepAlive) {
+      lastContentFuture.addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+}
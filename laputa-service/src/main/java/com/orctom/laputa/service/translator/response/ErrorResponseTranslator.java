@@ -18,6 +18,7 @@ public class ErrorResponseTranslator extends AbstractResponseTranslator implemen
 
   @Override
   public void translate(ChannelHandlerContext ctx, FullHttpRequest req, ResponseWrapper responseWrapper) {
+    closeChunkedContent(responseWrapper);
     FullHttpResponse res = createHttpResponse(responseWrapper);
     String mediaType = TEXT_HTML.getValue().equals(responseWrapper.getMediaType()) ?
         TEXT_HTML.getValue() : TEXT_PLAIN.getValue();
@@ -6,6 +6,7 @@ import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.ReferenceCountUtil;
 
 import static io.netty.handler.codec.http.HttpHeaderNames.LOCATION;
 import static io.netty.handler.codec.http.HttpResponseStatus.FOUND;
@@ -22,6 +23,8 @@ public class RedirectResponseTranslator extends AbstractResponseTranslator imple
 
   @Override
   public void translate(ChannelHandlerContext ctx, FullHttpRequest req, ResponseWrapper responseWrapper) {
+    ReferenceCountUtil.release(responseWrapper.getContentBuffer());
+    closeChunkedContent(responseWrapper);
     HttpResponseStatus status = responseWrapper.isPermanentRedirect() ? MOVED_PERMANENTLY : FOUND;
     FullHttpResponse res = new DefaultFullHttpResponse(HTTP_1_1, status);
     res.headers().set(LOCATION, responseWrapper.getRedirectTo());
@@ -16,6 +16,7 @@ public abstract class ResponseTranslators {
   static {
     REGISTRY.add(new ErrorResponseTranslator());
     REGISTRY.add(new RedirectResponseTranslator());
+    REGISTRY.add(new ChunkedResponseTranslator());
     REGISTRY.add(new ContentResponseTranslator());
   }
 
@@ -0,0 +1,174 @@
+package com.orctom.laputa.service.util;
+
+import com.orctom.laputa.service.annotation.Cookie;
+import com.orctom.laputa.service.annotation.Cookies;
+import com.orctom.laputa.service.annotation.HttpHeader;
+import com.orctom.laputa.service.annotation.HttpHeaders;
+import com.orctom.laputa.service.annotation.Param;
+import com.orctom.laputa.service.exception.ParameterValidationException;
+import com.orctom.laputa.service.model.Messenger;
+import com.orctom.laputa.service.model.RequestWrapper;
+import com.orctom.laputa.utils.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static com.orctom.laputa.service.util.ParamResolver.getDefaultValue;
+
+/**
+ * Binding plan of the args of a handler method, worked out once per method:
+ * one extractor per arg slot with its converter picked ahead, so binding a request is a loop over the slots,
+ * no param maps built, no annotations looked up.<br/>
+ * Only for the methods with args of the simple types converted here (and cookies, headers, messenger),
+ * the ones taking beans populated from the params go through {@link ArgsResolver}.
+ */
+public class ArgsBinder {
+
+  private final Slot[] slots;
+
+  private ArgsBinder(Slot[] slots) {
+    this.slots = slots;
+  }
+
+  /**
+   * @return null if any of the args is not simple, to be resolved by {@link ArgsResolver}
+   */
+  public static ArgsBinder create(Method handlerMethod) {
+    Parameter[] parameters = handlerMethod.getParameters();
+    Slot[] slots = new Slot[parameters.length];
+    for (int i = 0; i < parameters.length; i++) {
+      Slot slot = createSlot(parameters[i]);
+      if (null == slot) {
+        return null;
+      }
+      slots[i] = slot;
+    }
+    return new ArgsBinder(slots);
+  }
+
+  private static Slot createSlot(Parameter parameter) {
+    Class<?> type = parameter.getType();
+    String defaultValue = getDefaultValue(parameter);
+
+    if (Messenger.class.isAssignableFrom(type)) {
+      return (req, pathParams, messenger) -> messenger;
+    }
+
+    if (parameter.isAnnotationPresent(Cookies.class)) {
+      return (req, pathParams, messenger) -> getCookies(req);
+    }
+
+    Cookie cookie = parameter.getAnnotation(Cookie.class);
+    if (null != cookie) {
+      String name = cookie.value();
+      return (req, pathParams, messenger) -> {
+        String value = getCookies(req).get(name);
+        return null == value ? defaultValue : value;
+      };
+    }
+
+    if (parameter.isAnnotationPresent(HttpHeaders.class)) {
+      return (req, pathParams, messenger) -> {
+        Map<String, String> headers = new HashMap<>();
+        if (null == req.getHeaders()) {
+          return headers;
+        }
+        for (Map.Entry<String, String> header : req.getHeaders()) {
+          headers.put(header.getKey(), header.getValue());
+        }
+        return headers;
+      };
+    }
+
+    HttpHeader httpHeader = parameter.getAnnotation(HttpHeader.class);
+    if (null != httpHeader) {
+      String name = httpHeader.value();
+      return (req, pathParams, messenger) -> {
+        String value = null == req.getHeaders() ? null : req.getHeaders().get(name);
+        return null == value ? defaultValue : value;
+      };
+    }
+
+    Param param = parameter.getAnnotation(Param.class);
+    if (null == param || !ClassUtils.isSimpleValueType(type)) {
+      return null;
+    }
+
+    Function<String, Object> converter = getConverter(type);
+    if (null == converter) {
+      return null;
+    }
+
+    String name = param.value();
+    return (req, pathParams, messenger) -> {
+      String value = getParamValue(req, pathParams, name);
+      if (null == value) {
+        value = defaultValue;
+      }
+      try {
+        return null == value ? null : converter.apply(value);
+      } catch (NumberFormatException e) {
+        throw new ParameterValidationException("Invalid param value: " + value + ", is not " + type.getSimpleName());
+      }
+    };
+  }
+
+  /**
+   * @return null for the simple types not converted here (e.g. boolean), left to {@link ArgsResolver}
+   */
+  private static Function<String, Object> getConverter(Class<?> type) {
+    if (String.class == type) {
+      return value -> value;
+    } else if (Integer.class == type || int.class == type) {
+      return Integer::valueOf;
+    } else if (Double.class == type || double.class == type) {
+      return Double::valueOf;
+    } else if (Float.class == type || float.class == type) {
+      return Float::valueOf;
+    } else if (Long.class == type || long.class == type) {
+      return Long::valueOf;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Same precedence as {@link ParamResolver#extractParams}: path params, then single valued query params
+   */
+  private static String getParamValue(RequestWrapper req, Map<String, String> pathParams, String name) {
+    String value = pathParams.get(name);
+    if (null != value) {
+      return value;
+    }
+
+    Map<String, List<String>> queryParams = req.getParams();
+    if (null == queryParams) {
+      return null;
+    }
+    List<String> values = queryParams.get(name);
+    return null != values && 1 == values.size() ? values.get(0) : null;
+  }
+
+  private static Map<String, String> getCookies(RequestWrapper req) {
+    Map<String, String> cookies = req.getCookies();
+    return null == cookies ? Collections.emptyMap() : cookies;
+  }
+
+  public Object[] bind(RequestWrapper req, Map<String, String> pathParams, Messenger messenger) {
+    Object[] args = new Object[slots.length];
+    for (int i = 0; i < slots.length; i++) {
+      args[i] = slots[i].bind(req, pathParams, messenger);
+    }
+    return args;
+  }
+
+  @FunctionalInterface
+  private interface Slot {
+    Object bind(RequestWrapper req, Map<String, String> pathParams, Messenger messenger);
+  }
+}
@@ -0,0 +1,47 @@
+package com.orctom.laputa.service.util;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.util.AttributeKey;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * HTTP/2 streams are handed over as plain HTTP/1.1 messages carrying the stream id in an extension header,
+ * the response has to carry it back to end up on the right stream.
+ * HTTP/1.1 pipelined requests are numbered by the sequencer of the connection, out of the request,
+ * the response carries the number down to the sequencer to get written in the right order.
+ */
+public abstract class HttpStreams {
+
+  public static final String SEQUENCE = "x-laputa-sequence";
+
+  /**
+   * Set on the connections with a sequencer, looks up the sequence number of a request, `-1` if it has none
+   */
+  public static final AttributeKey<ToIntFunction<HttpMessage>> SEQUENCES = AttributeKey.valueOf("laputa.sequences");
+
+  private static final String STREAM_ID = HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text().toString();
+
+  public static boolean isHttp2(HttpMessage message) {
+    return message.headers().contains(STREAM_ID);
+  }
+
+  public static void copyStreamId(ChannelHandlerContext ctx, HttpMessage req, HttpResponse res) {
+    String streamId = req.headers().get(STREAM_ID);
+    if (null != streamId) {
+      res.headers().set(STREAM_ID, streamId);
+    }
+
+    ToIntFunction<HttpMessage> sequences = ctx.channel().attr(SEQUENCES).get();
+    if (null == sequences) {
+      return;
+    }
+    int sequence = sequences.applyAsInt(req);
+    if (sequence >= 0) {
+      res.headers().setInt(SEQUENCE, sequence);
+    }
+  }
+}
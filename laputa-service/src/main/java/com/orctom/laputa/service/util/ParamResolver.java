@@ -25,15 +25,21 @@ import static com.orctom.laputa.service.Constants.SIGN_DOT;
 public class ParamResolver {
 
   public static Map<String, String> extractParams(RequestMapping mapping, RequestWrapper requestWrapper) {
-    String path = requestWrapper.getPath();
-    Map<String, List<String>> queryParameters = requestWrapper.getParams();
+    return extractParams(mapping, requestWrapper, extractPathParams(mapping.getUriPattern(), requestWrapper.getPath()));
+  }
 
-    String pattern = mapping.getUriPattern();
+  /**
+   * @param pathParams already captured while matching the mapping, see {@link com.orctom.laputa.service.model.RouteMatch}
+   */
+  public static Map<String, String> extractParams(RequestMapping mapping,
+                                                  RequestWrapper requestWrapper,
+                                                  Map<String, String> pathParams) {
+    Map<String, List<String>> queryParameters = requestWrapper.getParams();
     Map<String, String> params = new HashMap<>();
 
     params.putAll(extractDefaultValues(mapping));
     params.putAll(extractQueryParams(queryParameters));
-    params.putAll(extractPathParams(pattern, path));
+    params.putAll(pathParams);
 
     return params;
   }
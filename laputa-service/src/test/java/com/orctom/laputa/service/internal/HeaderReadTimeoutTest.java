@@ -0,0 +1,71 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class HeaderReadTimeoutTest {
+
+  private static final long TIMEOUT = TimeUnit.MILLISECONDS.toNanos(10);
+
+  @Test
+  public void testSlowHeadersTimeOut() throws Exception {
+    EmbeddedChannel channel = newChannel();
+    channel.writeInbound(bytes("GET / HTTP/1.1\r\nHost: loca"));
+
+    TimeUnit.MILLISECONDS.sleep(30);
+    channel.runPendingTasks();
+
+    ByteBuf response = channel.readOutbound();
+    assertThat(response.toString(CharsetUtil.US_ASCII), startsWith("HTTP/1.1 408"));
+    response.release();
+    assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void testCompleteHeadersInTime() throws Exception {
+    EmbeddedChannel channel = newChannel();
+    channel.writeInbound(bytes("GET / HTTP/1.1\r\n"));
+    channel.writeInbound(bytes("Host: localhost\r\n\r\n"));
+
+    TimeUnit.MILLISECONDS.sleep(30);
+    channel.runPendingTasks();
+
+    assertTrue(channel.isOpen());
+    channel.finish();
+  }
+
+  @Test
+  public void testStalledBeforeProtocolDetectedClosed() throws Exception {
+    HeaderReadTimeout timeout = new HeaderReadTimeout(TIMEOUT);
+    EmbeddedChannel channel = new EmbeddedChannel(timeout.firstBytes());
+    channel.writeInbound(bytes("PRI * HT"));
+
+    TimeUnit.MILLISECONDS.sleep(30);
+    channel.runPendingTasks();
+
+    assertThat(channel.readOutbound(), nullValue());
+    assertFalse(channel.isOpen());
+    channel.finish();
+  }
+
+  private EmbeddedChannel newChannel() {
+    HeaderReadTimeout timeout = new HeaderReadTimeout(TIMEOUT);
+    return new EmbeddedChannel(timeout.firstBytes(), new HttpServerCodec(), timeout);
+  }
+
+  private ByteBuf bytes(String content) {
+    return Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII);
+  }
+}
@@ -0,0 +1,54 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+public class IdleConnectionReaperTest {
+
+  @Test
+  public void testIdleWithPartialPrefaceClosed() throws Exception {
+    LaputaServerInitializer initializer = new LaputaServerInitializer(
+        null, null, "/websocket", null, new DefaultChannelGroup(GlobalEventExecutor.INSTANCE));
+    EmbeddedChannel channel = new EmbeddedChannel(initializer);
+    channel.writeInbound(Unpooled.copiedBuffer("PRI * HT", CharsetUtil.US_ASCII));
+
+    channel.pipeline().fireUserEventTriggered(IdleStateEvent.ALL_IDLE_STATE_EVENT);
+
+    assertFalse(channel.isOpen());
+    channel.finish();
+  }
+
+  @Test
+  public void testInFlightTillResponseWritten() {
+    AtomicInteger inFlight = new AtomicInteger();
+    EmbeddedChannel channel = new EmbeddedChannel(new IdleConnectionReaper(inFlight));
+    channel.writeInbound(new DefaultFullHttpRequest(HTTP_1_1, HttpMethod.GET, "/1"));
+    channel.writeInbound(new DefaultFullHttpRequest(HTTP_1_1, HttpMethod.GET, "/2"));
+    assertThat(inFlight.get(), equalTo(2));
+
+    channel.write(new DefaultFullHttpResponse(HTTP_1_1, OK));
+    assertThat(inFlight.get(), equalTo(2));
+    channel.flush();
+    assertThat(inFlight.get(), equalTo(1));
+
+    channel.close();
+    assertThat(inFlight.get(), equalTo(0));
+    channel.finish();
+  }
+}
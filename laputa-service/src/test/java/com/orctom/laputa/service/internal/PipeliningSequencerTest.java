@@ -0,0 +1,226 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.util.HttpStreams;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.CONTINUE;
+import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_TIMEOUT;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class PipeliningSequencerTest {
+
+  @Test
+  public void testResponsesWrittenInRequestOrder() {
+    EmbeddedChannel channel = new EmbeddedChannel(new PipeliningSequencer(16));
+    FullHttpRequest first = request(channel, "/1");
+    FullHttpRequest second = request(channel, "/2");
+    FullHttpRequest third = request(channel, "/3");
+    assertFalse(third.headers().contains(HttpStreams.SEQUENCE));
+
+    FullHttpResponse thirdResponse = response(channel, third);
+    channel.writeAndFlush(thirdResponse);
+    FullHttpResponse secondResponse = response(channel, second);
+    channel.writeAndFlush(secondResponse);
+    assertThat(channel.readOutbound(), nullValue());
+
+    FullHttpResponse firstResponse = response(channel, first);
+    channel.writeAndFlush(firstResponse);
+    assertThat(channel.readOutbound(), sameInstance(firstResponse));
+    assertThat(channel.readOutbound(), sameInstance(secondResponse));
+    assertThat(channel.readOutbound(), sameInstance(thirdResponse));
+    assertThat(thirdResponse.headers().get(HttpStreams.SEQUENCE), nullValue());
+    channel.finish();
+  }
+
+  @Test
+  public void testHoldsBackWholeStreamedResponse() {
+    EmbeddedChannel channel = new EmbeddedChannel(new PipeliningSequencer(16));
+    FullHttpRequest first = request(channel, "/1");
+    FullHttpRequest second = request(channel, "/2");
+
+    HttpResponse head = new DefaultHttpResponse(HTTP_1_1, OK);
+    HttpStreams.copyStreamId(channel.pipeline().firstContext(), second, head);
+    channel.write(head);
+    channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+    assertThat(channel.readOutbound(), nullValue());
+
+    FullHttpResponse firstResponse = response(channel, first);
+    channel.writeAndFlush(firstResponse);
+    assertThat(channel.readOutbound(), sameInstance(firstResponse));
+    assertThat(channel.readOutbound(), sameInstance(head));
+    assertThat(channel.readOutbound(), equalTo(LastHttpContent.EMPTY_LAST_CONTENT));
+    channel.finish();
+  }
+
+  @Test
+  public void testPausesReadingOverLimit() {
+    EmbeddedChannel channel = new EmbeddedChannel(new PipeliningSequencer(2));
+    FullHttpRequest first = request(channel, "/1");
+    request(channel, "/2");
+    assertFalse(channel.config().isAutoRead());
+
+    channel.writeAndFlush(response(channel, first));
+    assertTrue(channel.config().isAutoRead());
+    channel.finish();
+  }
+
+  @Test
+  public void testRejectedByHandlersInBetweenKeptInOrder() {
+    EmbeddedChannel channel = new EmbeddedChannel(new PipeliningSequencer(16), new Rejecting());
+    FullHttpRequest first = request(channel, "/1");
+    channel.writeInbound(new DefaultFullHttpRequest(HTTP_1_1, HttpMethod.POST, "/reject"));
+    FullHttpRequest third = request(channel, "/3");
+
+    FullHttpResponse thirdResponse = response(channel, third);
+    channel.writeAndFlush(thirdResponse);
+    assertThat(channel.readOutbound(), nullValue());
+
+    FullHttpResponse firstResponse = response(channel, first);
+    channel.writeAndFlush(firstResponse);
+    assertThat(channel.readOutbound(), sameInstance(firstResponse));
+    FullHttpResponse rejected = channel.readOutbound();
+    assertThat(rejected.status(), equalTo(REQUEST_ENTITY_TOO_LARGE));
+    assertThat(channel.readOutbound(), sameInstance(thirdResponse));
+    assertTrue(channel.config().isAutoRead());
+    channel.finish();
+  }
+
+  @Test
+  public void testUnsequencedOutsideRequestTakesItsTurn() {
+    EmbeddedChannel channel = new EmbeddedChannel(new PipeliningSequencer(16));
+    FullHttpRequest first = request(channel, "/1");
+
+    FullHttpResponse timeout = new DefaultFullHttpResponse(HTTP_1_1, REQUEST_TIMEOUT);
+    channel.writeAndFlush(timeout);
+    assertThat(channel.readOutbound(), nullValue());
+
+    FullHttpResponse firstResponse = response(channel, first);
+    channel.writeAndFlush(firstResponse);
+    assertThat(channel.readOutbound(), sameInstance(firstResponse));
+    assertThat(channel.readOutbound(), sameInstance(timeout));
+    channel.finish();
+  }
+
+  @Test
+  public void testContinueDoesNotEndResponse() {
+    EmbeddedChannel channel = new EmbeddedChannel(new PipeliningSequencer(16), new Continuing());
+    FullHttpRequest first = request(channel, "/1");
+    FullHttpRequest second = request(channel, "/2");
+    assertThat(channel.readOutbound(), nullValue());
+
+    FullHttpResponse firstResponse = response(channel, first);
+    channel.writeAndFlush(firstResponse);
+    assertThat(channel.readOutbound(), sameInstance(firstResponse));
+    FullHttpResponse continued = channel.readOutbound();
+    assertThat(continued.status(), equalTo(CONTINUE));
+    assertThat(channel.readOutbound(), nullValue());
+
+    FullHttpResponse secondResponse = response(channel, second);
+    channel.writeAndFlush(secondResponse);
+    assertThat(channel.readOutbound(), sameInstance(secondResponse));
+    channel.finish();
+  }
+
+  @Test
+  public void testFailedRequestAnsweredInOrder() {
+    EmbeddedChannel channel = new EmbeddedChannel(new PipeliningSequencer(16), new ChannelInboundHandlerAdapter());
+    FullHttpRequest first = request(channel, "/1");
+    FullHttpRequest second = request(channel, "/2");
+
+    RejectedResponses.reject(channel.pipeline().lastContext(), second, INTERNAL_SERVER_ERROR);
+    channel.flush();
+    assertThat(channel.readOutbound(), nullValue());
+
+    FullHttpResponse firstResponse = response(channel, first);
+    channel.writeAndFlush(firstResponse);
+    assertThat(channel.readOutbound(), sameInstance(firstResponse));
+    FullHttpResponse failed = channel.readOutbound();
+    assertThat(failed.status(), equalTo(INTERNAL_SERVER_ERROR));
+    assertThat(failed.headers().get(HttpStreams.SEQUENCE), nullValue());
+    assertTrue(channel.config().isAutoRead());
+    channel.finish();
+  }
+
+  @Test
+  public void testExtensionHeadersStrippedOffRequests() {
+    EmbeddedChannel channel = new EmbeddedChannel(new PipeliningSequencer(16));
+    FullHttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, HttpMethod.GET, "/1");
+    request.headers().set(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text(), "3");
+    request.headers().set(HttpStreams.SEQUENCE, "5");
+    channel.writeInbound(request);
+    FullHttpRequest read = channel.readInbound();
+    assertFalse(HttpStreams.isHttp2(read));
+    assertFalse(read.headers().contains(HttpStreams.SEQUENCE));
+
+    FullHttpResponse response = response(channel, read);
+    channel.writeAndFlush(response);
+    assertThat(channel.readOutbound(), sameInstance(response));
+    assertThat(response.headers().get(HttpStreams.SEQUENCE), nullValue());
+    channel.finish();
+  }
+
+  private FullHttpRequest request(EmbeddedChannel channel, String uri) {
+    FullHttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, HttpMethod.GET, uri);
+    channel.writeInbound(request);
+    return channel.readInbound();
+  }
+
+  private FullHttpResponse response(EmbeddedChannel channel, FullHttpRequest request) {
+    FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, OK);
+    HttpStreams.copyStreamId(channel.pipeline().firstContext(), request, response);
+    return response;
+  }
+
+  /**
+   * Turns requests away the way the aggregator or cors handler does, without the sequence
+   */
+  private static class Rejecting extends ChannelInboundHandlerAdapter {
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+      if (msg instanceof HttpRequest && "/reject".equals(((HttpRequest) msg).uri())) {
+        ReferenceCountUtil.release(msg);
+        ctx.write(new DefaultFullHttpResponse(HTTP_1_1, REQUEST_ENTITY_TOO_LARGE));
+        return;
+      }
+      ctx.fireChannelRead(msg);
+    }
+  }
+
+  /**
+   * Answers `Expect: 100-continue` the way the aggregator does
+   */
+  private static class Continuing extends ChannelInboundHandlerAdapter {
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+      if (msg instanceof HttpRequest && "/2".equals(((HttpRequest) msg).uri())) {
+        ctx.write(new DefaultFullHttpResponse(HTTP_1_1, CONTINUE));
+      }
+      ctx.fireChannelRead(msg);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.orctom.laputa.service.internal;
+
+import com.google.common.base.Stopwatch;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RequestDispatcherTest {
+
+  private static final int REQUESTS = 2_000;
+  private static final long BLOCKING_MILLIS = 20;
+  private static final int EVENT_LOOPS = 2 * Runtime.getRuntime().availableProcessors();
+
+  private Config config(String dispatch) {
+    return ConfigFactory.parseString(
+        "server.dispatch = " + dispatch + "\n" +
+            "server.executor.threads = 0\n" +
+            "server.executor.queue = " + REQUESTS + "\n" +
+            "server.executor.virtual.maxInFlight = " + REQUESTS
+    );
+  }
+
+  @Test
+  public void testVirtualFallsBackOnOlderRuntimes() throws Exception {
+    RequestDispatcher dispatcher = new RequestDispatcher(config("virtual"));
+    assertThat(dispatcher.getMode(), not(equalTo(DispatchMode.EVENT_LOOP)));
+
+    CountDownLatch latch = new CountDownLatch(1);
+    dispatcher.dispatch(latch::countDown);
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Blocking controllers, `event-loop` is simulated by running inline on a pool sized as netty's default worker group.
+   */
+  @Test
+  public void testBlockingControllers() throws Exception {
+    ExecutorService eventLoops = Executors.newFixedThreadPool(EVENT_LOOPS);
+    long eventLoop = run(eventLoops::execute);
+    eventLoops.shutdown();
+    System.out.println("event-loop = " + eventLoop + "ms");
+
+    RequestDispatcher executor = new RequestDispatcher(config("executor"));
+    System.out.println("executor   = " + run(executor::dispatch) + "ms");
+
+    RequestDispatcher virtual = new RequestDispatcher(config("virtual"));
+    long elapsed = run(virtual::dispatch);
+    System.out.println("virtual    = " + elapsed + "ms (" + virtual.getMode().getKey() + ")");
+
+    if (DispatchMode.VIRTUAL == virtual.getMode()) {
+      assertTrue(elapsed < eventLoop);
+    }
+  }
+
+  private long run(Dispatch dispatch) throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(REQUESTS);
+    Stopwatch sw = Stopwatch.createStarted();
+    for (int i = 0; i < REQUESTS; i++) {
+      dispatch.dispatch(() -> {
+        try {
+          Thread.sleep(BLOCKING_MILLIS);
+        } catch (InterruptedException ignored) {
+        } finally {
+          latch.countDown();
+        }
+      });
+    }
+    latch.await();
+    sw.stop();
+    return sw.elapsed(TimeUnit.MILLISECONDS);
+  }
+
+  private interface Dispatch {
+    void dispatch(Runnable task);
+  }
+}
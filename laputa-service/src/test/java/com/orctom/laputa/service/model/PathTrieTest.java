@@ -0,0 +1,169 @@
+package com.orctom.laputa.service.model;
+
+import com.google.common.base.Stopwatch;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class PathTrieTest {
+
+  private PathTrie trie;
+
+  @Before
+  public void setUp() throws Exception {
+    trie = new PathTrie();
+    add("");
+    add("/products/{id}");
+    add("/products/{id}/attributes/{attid}");
+    add("/products/index");
+    add("/say{sth}to");
+    add("/a/b/c");
+    add("/a/{x}/d");
+    trie.compile();
+  }
+
+  @Test
+  public void testStatic() {
+    assertThat(match("/a/b/c"), equalTo("/a/b/c"));
+    assertThat(match("/"), equalTo(""));
+    assertThat(match("/a/b"), nullValue());
+  }
+
+  @Test
+  public void testStaticMatchShared() {
+    assertThat(trie.match("/a/b/c", HTTPMethod.GET), sameInstance(trie.match("/a/b/c", HTTPMethod.GET)));
+    assertThat(trie.match("/a/b/c", HTTPMethod.GET).getPathParams().size(), equalTo(0));
+  }
+
+  @Test
+  public void testPathParams() {
+    RouteMatch match = trie.match("/products/234235234/attributes/2222223.json", HTTPMethod.GET);
+    Map<String, String> params = match.getPathParams();
+    assertThat(params.size(), equalTo(2));
+    assertThat(params.get("id"), equalTo("234235234"));
+    assertThat(params.get("attid"), equalTo("2222223"));
+
+    assertThat(trie.match("/sayhelloto", HTTPMethod.GET).getPathParams().get("sth"), equalTo("hello"));
+    assertThat(match("/sayto"), nullValue());
+  }
+
+  @Test
+  public void testFallbackFromStaticToParam() {
+    RouteMatch match = trie.match("/a/b/d", HTTPMethod.GET);
+    assertThat(match.getMapping().getUriPattern(), equalTo("/a/{x}/d"));
+    assertThat(match.getPathParams().get("x"), equalTo("b"));
+  }
+
+  @Test
+  public void testIndex() {
+    assertThat(match("/products/"), equalTo("/products/index"));
+    assertThat(match("/products/index"), equalTo("/products/index"));
+  }
+
+  @Test
+  public void testHttpMethod() {
+    assertThat(trie.match("/a/b/c", HTTPMethod.POST), nullValue());
+  }
+
+  @Test
+  public void testBacktrackingAcrossLevels() throws Exception {
+    PathTrie trie = new PathTrie();
+    add(trie, "/x/{a}/{b}/{c}/z");
+    add(trie, "/x/k/k/k/y");
+    trie.compile();
+
+    RouteMatch match = trie.match("/x/k/k/k/z", HTTPMethod.GET);
+    assertThat(match.getMapping().getUriPattern(), equalTo("/x/{a}/{b}/{c}/z"));
+    assertThat(match.getPathParams().get("c"), equalTo("k"));
+    assertThat(trie.match("/x/k/k/k/y", HTTPMethod.GET).getMapping().getUriPattern(), equalTo("/x/k/k/k/y"));
+    assertThat(trie.match("/x/k/k/k", HTTPMethod.GET), nullValue());
+  }
+
+  @Test
+  public void testPrecedence() throws Exception {
+    PathTrie trie = new PathTrie();
+    add(trie, "/f/{id}");
+    add(trie, "/f/i{id}");
+    add(trie, "/f/item{id}");
+    add(trie, "/f/items");
+    trie.compile();
+
+    assertThat(trie.match("/f/items", HTTPMethod.GET).getMapping().getUriPattern(), equalTo("/f/items"));
+    assertThat(trie.match("/f/item7", HTTPMethod.GET).getMapping().getUriPattern(), equalTo("/f/item{id}"));
+    assertThat(trie.match("/f/i7", HTTPMethod.GET).getMapping().getUriPattern(), equalTo("/f/i{id}"));
+    assertThat(trie.match("/f/7", HTTPMethod.GET).getMapping().getUriPattern(), equalTo("/f/{id}"));
+  }
+
+  @Test
+  public void testConflicts() throws Exception {
+    assertThat(trie.getConflicts().size(), equalTo(0));
+
+    PathTrie trie = new PathTrie();
+    add(trie, "/f/item{id}");
+    add(trie, "/f/{id}-x");
+    add(trie, "/g/a{id}/b");
+    add(trie, "/g/{id}z/c");
+    trie.compile();
+
+    List<String> conflicts = trie.getConflicts();
+    assertThat(conflicts.size(), equalTo(1));
+    assertThat(conflicts.get(0), startsWith("/f/item{id}"));
+  }
+
+  @Test
+  public void testManyRoutes() throws Exception {
+    PathTrie trie = new PathTrie();
+    for (int i = 0; i < 3000; i++) {
+      add(trie, "/category" + (i % 50) + "/product" + i + "/{id}");
+    }
+    trie.compile();
+
+    Stopwatch sw = Stopwatch.createStarted();
+    for (int i = 0; i < 100_000; i++) {
+      int route = i % 3000;
+      trie.match("/category" + (route % 50) + "/product" + route + "/" + i, HTTPMethod.GET);
+    }
+    sw.stop();
+    System.out.println("100k matches over 3000 routes: " + sw.toString());
+
+    RouteMatch match = trie.match("/category7/product2957/abc", HTTPMethod.GET);
+    assertThat(match.getMapping().getUriPattern(), equalTo("/category7/product2957/{id}"));
+    assertThat(match.getPathParams().get("id"), equalTo("abc"));
+  }
+
+  private String match(String path) {
+    RouteMatch match = trie.match(path, HTTPMethod.GET);
+    return null == match ? null : match.getMapping().getUriPattern();
+  }
+
+  private void add(String uriPattern) throws Exception {
+    add(trie, uriPattern);
+  }
+
+  private void add(PathTrie trie, String uriPattern) throws Exception {
+    RequestMapping mapping = new RequestMapping(
+        uriPattern,
+        new Controller(),
+        Controller.class,
+        Controller.class.getMethod("handle"),
+        HTTPMethod.GET.getKey(),
+        null
+    );
+    trie.add(uriPattern, HTTPMethod.GET, mapping);
+  }
+
+  public static class Controller {
+
+    public String handle() {
+      return "ok";
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.orctom.laputa.service.translator.content;
+
+import com.alibaba.fastjson.JSON;
+import com.orctom.laputa.service.domain.SKU;
+import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.translator.response.ChunkedResponseTranslator;
+import com.orctom.laputa.service.translator.response.ErrorResponseTranslator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class StreamedContentTest {
+
+  @Test
+  public void testJsonArrayInChunks() throws Exception {
+    List<SKU> skus = IntStream.range(0, 2000)
+        .mapToObj(i -> new SKU((long) i, "sku-" + i, null))
+        .collect(Collectors.toList());
+
+    AtomicBoolean closed = new AtomicBoolean();
+    Stream<SKU> stream = skus.stream().onClose(() -> closed.set(true));
+    StreamedContent content = new StreamedContent(stream, new JsonContentTranslator().getStreamEncoder());
+
+    StringBuilder json = new StringBuilder();
+    int chunks = 0;
+    while (!content.isEndOfInput()) {
+      ByteBuf chunk = content.readChunk(UnpooledByteBufAllocator.DEFAULT);
+      json.append(chunk.toString(CharsetUtil.UTF_8));
+      chunk.release();
+      chunks++;
+    }
+    content.close();
+
+    assertTrue(chunks > 1);
+    assertTrue(closed.get());
+    assertThat(JSON.parseArray(json.toString(), SKU.class).size(), equalTo(skus.size()));
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    StreamedContent content = new StreamedContent(Stream.empty(), new JsonContentTranslator().getStreamEncoder());
+    ByteBuf chunk = content.readChunk(UnpooledByteBufAllocator.DEFAULT);
+    assertThat(chunk.toString(CharsetUtil.UTF_8), equalTo("[]"));
+    assertTrue(content.isEndOfInput());
+    chunk.release();
+  }
+
+  @Test
+  public void testFailingIteratorClosesConnection() throws Exception {
+    AtomicBoolean closed = new AtomicBoolean();
+    Stream<SKU> stream = IntStream.range(0, 2000)
+        .mapToObj(i -> {
+          if (1000 == i) {
+            throw new IllegalStateException("export failed");
+          }
+          return new SKU((long) i, "sku-" + i, null);
+        })
+        .onClose(() -> closed.set(true));
+    ResponseWrapper responseWrapper = new ResponseWrapper("application/json");
+    responseWrapper.setChunkedContent(new StreamedContent(stream, new JsonContentTranslator().getStreamEncoder()));
+
+    EmbeddedChannel channel = new EmbeddedChannel(new ChunkedWriteHandler(), new ChannelInboundHandlerAdapter());
+    FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/skus");
+    new ChunkedResponseTranslator().translate(channel.pipeline().lastContext(), req, responseWrapper);
+    channel.runPendingTasks();
+
+    assertFalse(channel.isOpen());
+    assertTrue(closed.get());
+    req.release();
+    channel.finish();
+  }
+
+  @Test
+  public void testStreamClosedOnErrorResponse() {
+    AtomicBoolean closed = new AtomicBoolean();
+    Stream<SKU> stream = Stream.of(new SKU(1L, "sku-1", null)).onClose(() -> closed.set(true));
+    ResponseWrapper responseWrapper = new ResponseWrapper("application/json");
+    responseWrapper.setChunkedContent(new StreamedContent(stream, new JsonContentTranslator().getStreamEncoder()));
+    responseWrapper.setStatus(HttpResponseStatus.BAD_REQUEST);
+
+    EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/skus");
+    new ErrorResponseTranslator().translate(channel.pipeline().lastContext(), req, responseWrapper);
+
+    assertTrue(closed.get());
+    req.release();
+    channel.finish();
+  }
+}
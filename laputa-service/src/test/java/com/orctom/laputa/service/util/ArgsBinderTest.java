@@ -0,0 +1,133 @@
+package com.orctom.laputa.service.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.orctom.laputa.service.annotation.DefaultValue;
+import com.orctom.laputa.service.annotation.HttpHeader;
+import com.orctom.laputa.service.annotation.Param;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.domain.Category;
+import com.orctom.laputa.service.model.HTTPMethod;
+import com.orctom.laputa.service.model.Messenger;
+import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.service.model.RequestWrapper;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+public class ArgsBinderTest {
+
+  private static final int ROUNDS = 100_000;
+
+  @BeforeClass
+  public static void beforeClass() {
+    Configurator.getInstance();
+  }
+
+  public static class Dummy {
+    public void simple(@Param("id") Long id,
+                       @Param("page") @DefaultValue("1") int page,
+                       @Param("q") String q,
+                       @HttpHeader("X-Token") String token,
+                       Messenger messenger) {
+    }
+
+    public void complex(@Param("category") Category category) {
+    }
+
+    public void flag(@Param("id") Long id, @Param("enabled") boolean enabled) {
+    }
+  }
+
+  private Messenger messenger = new Messenger();
+
+  private RequestWrapper requestWrapper = new RequestWrapper(
+      HttpMethod.GET,
+      new DefaultHttpHeaders().add("X-Token", "t0k3n"),
+      "/products/123?q=shoes&id=456",
+      "/products/123",
+      ImmutableMap.<String, List<String>>of("q", Lists.newArrayList("shoes"), "id", Lists.newArrayList("456")),
+      ""
+  );
+
+  private Map<String, String> pathParams = Collections.singletonMap("id", "123");
+
+  @Test
+  public void testBind() throws Exception {
+    RequestMapping mapping = createMapping("simple", Long.class, int.class, String.class, String.class, Messenger.class);
+    ArgsBinder binder = mapping.getArgsBinder();
+    assertThat(binder, notNullValue());
+
+    Object[] expected = new Object[]{123L, 1, "shoes", "t0k3n", messenger};
+    assertArrayEquals(expected, binder.bind(requestWrapper, pathParams, messenger));
+  }
+
+  @Test
+  public void testSameAsArgsResolver() throws Exception {
+    RequestMapping mapping = createMapping("simple", Long.class, int.class, String.class, String.class, Messenger.class);
+    assertArrayEquals(resolve(mapping), mapping.getArgsBinder().bind(requestWrapper, pathParams, messenger));
+  }
+
+  @Test
+  public void testComplexTypesLeftToArgsResolver() throws Exception {
+    assertThat(createMapping("complex", Category.class).getArgsBinder(), nullValue());
+  }
+
+  @Test
+  public void testUnsupportedSimpleTypesLeftToArgsResolver() throws Exception {
+    assertThat(createMapping("flag", Long.class, boolean.class).getArgsBinder(), nullValue());
+  }
+
+  @Test
+  public void testAllocation() throws Exception {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+      return;
+    }
+    com.sun.management.ThreadMXBean mxBean = (com.sun.management.ThreadMXBean) threadMXBean;
+    long threadId = Thread.currentThread().getId();
+
+    RequestMapping mapping = createMapping("simple", Long.class, int.class, String.class, String.class, Messenger.class);
+    ArgsBinder binder = mapping.getArgsBinder();
+    for (int i = 0; i < ROUNDS; i++) {
+      resolve(mapping);
+      binder.bind(requestWrapper, pathParams, messenger);
+    }
+
+    long start = mxBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < ROUNDS; i++) {
+      resolve(mapping);
+    }
+    long resolved = mxBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < ROUNDS; i++) {
+      binder.bind(requestWrapper, pathParams, messenger);
+    }
+    long bound = mxBean.getThreadAllocatedBytes(threadId);
+
+    System.out.println("bytes allocated per request, ArgsResolver: " + (resolved - start) / ROUNDS +
+        ", ArgsBinder: " + (bound - resolved) / ROUNDS);
+  }
+
+  private Object[] resolve(RequestMapping mapping) {
+    Map<String, String> params = ParamResolver.extractParams(mapping, requestWrapper, pathParams);
+    return ArgsResolver.resolveArgs(params, mapping.getHandlerParameters(), requestWrapper, messenger);
+  }
+
+  private RequestMapping createMapping(String name, Class<?>... parameterTypes) throws Exception {
+    Method method = Dummy.class.getMethod(name, parameterTypes);
+    return new RequestMapping("/products/{id}", new Dummy(), Dummy.class, method, HTTPMethod.GET.getKey(), null);
+  }
+}
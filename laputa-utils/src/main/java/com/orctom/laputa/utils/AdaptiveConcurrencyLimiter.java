@@ -0,0 +1,102 @@
+package com.orctom.laputa.utils;
+
+import com.orctom.laputa.exception.IllegalArgException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gradient based concurrency limit, never blocks.
+ * Compares a short-term latency average with a long-term one (the no-load latency),
+ * the limit shrinks once requests start queueing and grows back by ~sqrt(limit) while latency stays flat.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  private static final double SHORT_ALPHA = 2D / (10 + 1);
+  private static final double LONG_ALPHA = 2D / (600 + 1);
+  private static final double SMOOTHING = 0.2;
+  private static final double TOLERANCE = 1.5;
+  private static final double MIN_GRADIENT = 0.5;
+
+  private final int minLimit;
+  private final int maxLimit;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile double limit;
+
+  private double shortRtt;
+  private double longRtt;
+
+  public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+    if (minLimit <= 0 || minLimit > maxLimit) {
+      throw new IllegalArgException("Expecting 0 < minLimit <= maxLimit, but got: " + minLimit + ", " + maxLimit);
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+  }
+
+  public boolean tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= (int) limit) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Releases without a latency sample, e.g. the request was dropped before it got processed
+   */
+  public void release() {
+    inFlight.decrementAndGet();
+  }
+
+  public void release(long rttNanos) {
+    int current = inFlight.getAndDecrement();
+    update(rttNanos, current);
+  }
+
+  private synchronized void update(long rttNanos, int current) {
+    if (0 == longRtt) {
+      shortRtt = longRtt = rttNanos;
+      return;
+    }
+
+    shortRtt += (rttNanos - shortRtt) * SHORT_ALPHA;
+    longRtt += (rttNanos - longRtt) * LONG_ALPHA;
+
+    // load is gone, let the baseline catch up instead of crawling back over hundreds of samples
+    if (longRtt / shortRtt > 2) {
+      longRtt *= 0.95;
+    }
+
+    // not enough requests to tell anything about the limit
+    if (current < limit / 2) {
+      return;
+    }
+
+    double gradient = Math.max(MIN_GRADIENT, Math.min(1D, TOLERANCE * longRtt / shortRtt));
+    double newLimit = limit * gradient + Math.sqrt(limit);
+    newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+    limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+  }
+
+  public int getLimit() {
+    return (int) limit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public synchronized long getShortRtt() {
+    return (long) shortRtt;
+  }
+
+  public synchronized long getLongRtt() {
+    return (long) longRtt;
+  }
+}
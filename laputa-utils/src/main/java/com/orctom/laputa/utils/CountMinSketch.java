@@ -0,0 +1,95 @@
+package com.orctom.laputa.utils;
+
+import com.orctom.laputa.exception.IllegalArgException;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate counts of any number of keys in fixed memory, `depth * width` counters.
+ * Never under-estimates, over-estimates by less than `2 * total / width` with a probability of `1 - (1/2)^depth`.
+ * Each row hashes the key itself with a seed of its own, keys colliding in one row (or in `hashCode()`)
+ * are unlikely to collide in the others.
+ */
+public class CountMinSketch {
+
+  private final int width;
+  private final int depth;
+  private final AtomicLongArray counters;
+
+  public CountMinSketch(int width, int depth) {
+    if (width <= 0 || depth <= 0) {
+      throw new IllegalArgException("Expecting positive width and depth, but got: " + width + ", " + depth);
+    }
+    this.width = width;
+    this.depth = depth;
+    this.counters = new AtomicLongArray(width * depth);
+  }
+
+  /**
+   * @return the estimated count of `key` after adding
+   */
+  public long add(String key, long count) {
+    long min = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      long value = counters.addAndGet(index(key, row), count);
+      min = Math.min(min, value);
+    }
+    return min;
+  }
+
+  public long estimate(String key) {
+    long min = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      min = Math.min(min, counters.get(index(key, row)));
+    }
+    return min;
+  }
+
+  public void clear() {
+    for (int i = 0; i < counters.length(); i++) {
+      counters.set(i, 0);
+    }
+  }
+
+  private int index(String key, int row) {
+    return row * width + ((murmur3(key, row) & Integer.MAX_VALUE) % width);
+  }
+
+  /**
+   * murmur3_32 over the chars of the key, two chars a block (same as guava's `hashUnencodedChars()`)
+   */
+  private static int murmur3(String key, int seed) {
+    int h = seed;
+    int length = key.length();
+    for (int i = 1; i < length; i += 2) {
+      int k = key.charAt(i - 1) | (key.charAt(i) << 16);
+      h = mixH(h, mixK(k));
+    }
+    if (1 == (length & 1)) {
+      h ^= mixK(key.charAt(length - 1));
+    }
+    return fmix(h ^ (length << 1));
+  }
+
+  private static int mixK(int k) {
+    k *= 0xcc9e2d51;
+    k = Integer.rotateLeft(k, 15);
+    k *= 0x1b873593;
+    return k;
+  }
+
+  private static int mixH(int h, int k) {
+    h ^= k;
+    h = Integer.rotateLeft(h, 13);
+    return h * 5 + 0xe6546b64;
+  }
+
+  private static int fmix(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
@@ -0,0 +1,56 @@
+package com.orctom.laputa.utils;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the `capacity` keys with the highest counts offered, the lowest one gets evicted when full
+ */
+public class HeavyHitters {
+
+  private final int capacity;
+  private final Map<String, Long> counts;
+
+  private volatile long min;
+
+  public HeavyHitters(int capacity) {
+    this.capacity = capacity;
+    this.counts = new HashMap<>(2 * capacity);
+  }
+
+  public void offer(String key, long count) {
+    if (count <= min) {
+      return;
+    }
+
+    synchronized (this) {
+      counts.merge(key, count, Math::max);
+      if (counts.size() > capacity) {
+        counts.entrySet().stream()
+            .min(Map.Entry.comparingByValue())
+            .ifPresent(e -> counts.remove(e.getKey()));
+      }
+      if (counts.size() >= capacity) {
+        min = counts.values().stream().mapToLong(Long::longValue).min().orElse(0);
+      }
+    }
+  }
+
+  /**
+   * @return highest first
+   */
+  public synchronized List<Map.Entry<String, Long>> top() {
+    List<Map.Entry<String, Long>> top = new ArrayList<>(counts.size());
+    counts.forEach((key, count) -> top.add(new AbstractMap.SimpleImmutableEntry<>(key, count)));
+    top.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+    return top;
+  }
+
+  public synchronized void clear() {
+    counts.clear();
+    min = 0;
+  }
+}
@@ -0,0 +1,66 @@
+package com.orctom.laputa.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate per-key counts over a sliding window, in fixed memory.
+ * Keeps a {@link CountMinSketch} for the current window and one for the previous,
+ * the previous one is weighted by how much of it still overlaps the sliding window.
+ */
+public class SlidingWindowCounter {
+
+  private final long windowNanos;
+  private final CountMinSketch[] sketches;
+  private final AtomicLong currentWindow;
+  private final Runnable onRotation;
+
+  public SlidingWindowCounter(long window, TimeUnit unit, int width, int depth) {
+    this(window, unit, width, depth, null);
+  }
+
+  /**
+   * @param onRotation run by the caller moving the counter on to a new window
+   */
+  public SlidingWindowCounter(long window, TimeUnit unit, int width, int depth, Runnable onRotation) {
+    this.windowNanos = unit.toNanos(window);
+    this.sketches = new CountMinSketch[]{new CountMinSketch(width, depth), new CountMinSketch(width, depth)};
+    this.currentWindow = new AtomicLong(Math.floorDiv(System.nanoTime(), windowNanos));
+    this.onRotation = onRotation;
+  }
+
+  /**
+   * @return the estimated count of `key` over the sliding window, including this one
+   */
+  public long increment(String key) {
+    long now = System.nanoTime();
+    long window = rotate(now);
+    long current = sketches[(int) (window & 1)].add(key, 1);
+    long previous = sketches[(int) ((window + 1) & 1)].estimate(key);
+    double overlap = 1D - (double) Math.floorMod(now, windowNanos) / windowNanos;
+    return current + (long) (previous * overlap);
+  }
+
+  /**
+   * The sketch of two windows ago gets reused for the new window. Counts racing with the clearing may get lost.
+   * `nanoTime()` may well be negative, floored for the windows to be of the same length either side of 0.
+   */
+  private long rotate(long now) {
+    long window = Math.floorDiv(now, windowNanos);
+    long last = currentWindow.get();
+    if (window <= last) {
+      return last;
+    }
+
+    if (currentWindow.compareAndSet(last, window)) {
+      sketches[(int) (window & 1)].clear();
+      if (window - last > 1) {
+        sketches[(int) ((window + 1) & 1)].clear();
+      }
+      if (null != onRotation) {
+        onRotation.run();
+      }
+    }
+    return window;
+  }
+}
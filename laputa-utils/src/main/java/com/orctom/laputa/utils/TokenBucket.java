@@ -0,0 +1,54 @@
+package com.orctom.laputa.utils;
+
+import com.orctom.laputa.exception.IllegalArgException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket that never blocks the caller.
+ * Implemented as GCRA: only the theoretical arrival time of the next permit is kept, updated with CAS.
+ * The bucket starts full, holding up to `burst` permits.
+ */
+public class TokenBucket {
+
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final long nanosPerPermit;
+  private final long burstNanos;
+  private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+
+  public TokenBucket(double permitsPerSecond) {
+    this(permitsPerSecond, permitsPerSecond);
+  }
+
+  public TokenBucket(double permitsPerSecond, double burst) {
+    if (permitsPerSecond <= 0) {
+      throw new IllegalArgException("permitsPerSecond should be positive, but is: " + permitsPerSecond);
+    }
+    this.nanosPerPermit = Math.max(1L, (long) (NANOS_PER_SECOND / permitsPerSecond));
+    this.burstNanos = nanosPerPermit * Math.max(1L, (long) burst);
+  }
+
+  public boolean tryAcquire() {
+    return tryAcquire(1);
+  }
+
+  /**
+   * @return false right away if `permits` are not available now, never succeeds if `permits` is larger than the burst
+   */
+  public boolean tryAcquire(int permits) {
+    long cost = permits * nanosPerPermit;
+    while (true) {
+      long now = System.nanoTime();
+      long tat = theoreticalArrival.get();
+      long next = Math.max(tat, now) + cost;
+      if (next - now > burstNanos) {
+        return false;
+      }
+      if (theoreticalArrival.compareAndSet(tat, next)) {
+        return true;
+      }
+    }
+  }
+}
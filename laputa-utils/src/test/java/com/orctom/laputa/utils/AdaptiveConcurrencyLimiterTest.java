@@ -0,0 +1,62 @@
+package com.orctom.laputa.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+  private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+  @Test
+  public void testRejectsAboveLimit() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10);
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+
+    limiter.release();
+    assertTrue(limiter.tryAcquire());
+    assertThat(limiter.getInFlight(), equalTo(2));
+  }
+
+  @Test
+  public void testGrowsWhileLatencyIsFlat() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 1000);
+    run(limiter, 200, RTT);
+    assertThat(limiter.getLimit(), greaterThan(10));
+  }
+
+  @Test
+  public void testShrinksWhenLatencyGrows() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100);
+    run(limiter, 200, RTT);
+    int limit = limiter.getLimit();
+
+    run(limiter, 1, RTT * 5);
+    assertThat(limiter.getLimit(), lessThan(limit));
+    assertThat(limiter.getShortRtt(), greaterThan(limiter.getLongRtt()));
+  }
+
+  /**
+   * Keeps the limiter saturated, every round fills it up then completes all requests with the given latency
+   */
+  private void run(AdaptiveConcurrencyLimiter limiter, int rounds, long rtt) {
+    for (int i = 0; i < rounds; i++) {
+      int acquired = 0;
+      while (limiter.tryAcquire()) {
+        acquired++;
+      }
+      for (int j = 0; j < acquired; j++) {
+        limiter.release(rtt);
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.orctom.laputa.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class CountMinSketchTest {
+
+  @Test
+  public void testEstimate() {
+    CountMinSketch sketch = new CountMinSketch(1024, 4);
+    for (int i = 0; i < 100_000; i++) {
+      sketch.add("client-" + (i % 10_000), 1);
+    }
+    for (int i = 0; i < 1000; i++) {
+      sketch.add("abuser", 1);
+    }
+
+    long estimate = sketch.estimate("abuser");
+    assertThat(estimate, greaterThanOrEqualTo(1000L));
+    assertThat(estimate, lessThan(1000L + 2 * 101_000 / 1024));
+    assertThat(sketch.estimate("client-1"), greaterThanOrEqualTo(10L));
+
+    sketch.clear();
+    assertThat(sketch.estimate("abuser"), equalTo(0L));
+  }
+
+  @Test
+  public void testCollidingHashCodesNotOverCounted() {
+    assertThat("Aa".hashCode(), equalTo("BB".hashCode()));
+
+    CountMinSketch sketch = new CountMinSketch(1024, 4);
+    for (int i = 0; i < 1000; i++) {
+      sketch.add("Aa", 1);
+    }
+    assertThat(sketch.estimate("Aa"), equalTo(1000L));
+    assertThat(sketch.estimate("BB"), lessThan(1000L));
+  }
+
+  @Test
+  public void testSlidingWindow() throws Exception {
+    SlidingWindowCounter counter = new SlidingWindowCounter(100, TimeUnit.MILLISECONDS, 256, 4);
+    long count = 0;
+    for (int i = 0; i < 50; i++) {
+      count = counter.increment("client");
+    }
+    assertThat(count, greaterThanOrEqualTo(50L));
+
+    TimeUnit.MILLISECONDS.sleep(250);
+    assertThat(counter.increment("client"), equalTo(1L));
+  }
+
+  @Test
+  public void testRotation() throws Exception {
+    AtomicInteger rotations = new AtomicInteger();
+    SlidingWindowCounter counter = new SlidingWindowCounter(100, TimeUnit.MILLISECONDS, 256, 4, rotations::incrementAndGet);
+    counter.increment("client");
+
+    TimeUnit.MILLISECONDS.sleep(150);
+    counter.increment("client");
+    assertThat(rotations.get(), greaterThanOrEqualTo(1));
+  }
+
+  @Test
+  public void testHeavyHitters() {
+    HeavyHitters hitters = new HeavyHitters(2);
+    hitters.offer("a", 10);
+    hitters.offer("b", 30);
+    hitters.offer("c", 20);
+    hitters.offer("a", 5);
+
+    assertThat(hitters.top().size(), equalTo(2));
+    assertThat(hitters.top().get(0).getKey(), equalTo("b"));
+    assertThat(hitters.top().get(1).getKey(), equalTo("c"));
+  }
+}
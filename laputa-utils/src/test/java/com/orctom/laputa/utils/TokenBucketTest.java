@@ -0,0 +1,65 @@
+package com.orctom.laputa.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+
+  @Test
+  public void testBurst() {
+    TokenBucket bucket = new TokenBucket(1, 5);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(bucket.tryAcquire());
+    }
+    assertFalse(bucket.tryAcquire());
+  }
+
+  @Test
+  public void testCost() {
+    TokenBucket bucket = new TokenBucket(1, 10);
+    assertTrue(bucket.tryAcquire(6));
+    assertFalse(bucket.tryAcquire(6));
+    assertTrue(bucket.tryAcquire(4));
+    assertFalse(bucket.tryAcquire(11));
+  }
+
+  @Test
+  public void testRefill() throws Exception {
+    TokenBucket bucket = new TokenBucket(100, 1);
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+    Thread.sleep(20);
+    assertTrue(bucket.tryAcquire());
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    int threads = 8;
+    TokenBucket bucket = new TokenBucket(0.001, 1000);
+    AtomicInteger acquired = new AtomicInteger();
+    CountDownLatch latch = new CountDownLatch(threads);
+    ExecutorService es = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      es.execute(() -> {
+        for (int j = 0; j < 1000; j++) {
+          if (bucket.tryAcquire()) {
+            acquired.incrementAndGet();
+          }
+        }
+        latch.countDown();
+      });
+    }
+    latch.await();
+    es.shutdown();
+    assertThat(acquired.get(), equalTo(1000));
+  }
+}